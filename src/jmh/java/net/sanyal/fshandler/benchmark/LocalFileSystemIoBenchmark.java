@@ -0,0 +1,81 @@
+package net.sanyal.fshandler.benchmark;
+
+import net.sanyal.fshandler.local.LocalFileSystem;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read and write throughput of {@link LocalFileSystem} across file sizes. Reads are served from a
+ * warm page cache after the first iteration, so they measure the software path rather than the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class LocalFileSystemIoBenchmark {
+    private static final String READ_FILE = "read.bin";
+    private static final String WRITE_FILE = "write.bin";
+    // Matches the buffer used when copying a download to the response
+    private static final int COPY_BUFFER = 8192;
+
+    @Param({"1024", "1048576", "104857600", "1073741824"})
+    long fileSize;
+
+    private Path baseDir;
+    private LocalFileSystem fileSystem;
+    private byte[] buffer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        baseDir = Files.createTempDirectory("fs-handler-io-bench");
+        LocalFixtures.createFile(baseDir.resolve(READ_FILE), fileSize);
+        fileSystem = LocalFixtures.newFileSystem(baseDir);
+        buffer = new byte[COPY_BUFFER];
+        new Random(1).nextBytes(buffer);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(baseDir);
+    }
+
+    @Benchmark
+    public long readFile() throws IOException {
+        long total = 0;
+        try (InputStream is = fileSystem.readFile(READ_FILE)) {
+            int n;
+            while ((n = is.read(buffer)) > 0) {
+                total += n;
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long readFileRange() throws IOException {
+        // Second half of the file, as a resumed download would request it
+        try (InputStream is = fileSystem.readFile(READ_FILE, fileSize / 2, fileSize - fileSize / 2)) {
+            return is.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    @Benchmark
+    public long writeFile() throws IOException {
+        try (OutputStream os = fileSystem.writeFile(WRITE_FILE)) {
+            for (long written = 0; written < fileSize; written += buffer.length) {
+                os.write(buffer, 0, (int) Math.min(buffer.length, fileSize - written));
+            }
+        }
+        return fileSize;
+    }
+}
@@ -0,0 +1,73 @@
+package net.sanyal.fshandler.benchmark;
+
+import net.sanyal.fshandler.core.model.FileMetadata;
+import net.sanyal.fshandler.local.LocalFileSystem;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listing and metadata hot paths of {@link LocalFileSystem} across directory sizes.
+ * <p>
+ * The fixture holds a flat directory and a tree with {@code entries} files each. The largest sizes
+ * take minutes to generate; narrow them with the JMH {@code -p entries=...} option of the
+ * {@code jmhJar} when iterating locally.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class LocalFileSystemListingBenchmark {
+    private static final String FLAT = "flat";
+    private static final String TREE = "tree";
+    private static final int TREE_FANOUT = 10;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    int entries;
+
+    private Path baseDir;
+    private LocalFileSystem fileSystem;
+    private String metadataPath;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        baseDir = Files.createTempDirectory("fs-handler-list-bench");
+        LocalFixtures.createFlatDirectory(baseDir.resolve(FLAT), entries);
+        LocalFixtures.createTree(baseDir.resolve(TREE), entries, TREE_FANOUT);
+        fileSystem = LocalFixtures.newFileSystem(baseDir);
+        metadataPath = FLAT + "/" + LocalFixtures.entryName(entries / 2);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(baseDir);
+    }
+
+    @Benchmark
+    public List<FileMetadata> list() {
+        return fileSystem.list(FLAT, null);
+    }
+
+    @Benchmark
+    public List<FileMetadata> listWithFilter() {
+        return fileSystem.list(FLAT, metadata -> metadata.getName().endsWith("5.dat"));
+    }
+
+    @Benchmark
+    public List<FileMetadata> listRecursive() {
+        return fileSystem.listRecursive(TREE, null);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public FileMetadata getMetadata() {
+        return fileSystem.getMetadata(metadataPath);
+    }
+}
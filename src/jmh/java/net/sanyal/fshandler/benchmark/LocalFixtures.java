@@ -0,0 +1,80 @@
+package net.sanyal.fshandler.benchmark;
+
+import net.sanyal.fshandler.core.config.LocalFileSystemConfig;
+import net.sanyal.fshandler.local.LocalFileSystem;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+/**
+ * Generates temporary directory trees and files for the local file system benchmarks.
+ */
+final class LocalFixtures {
+    private static final int WRITE_CHUNK = 1024 * 1024;
+
+    private LocalFixtures() {
+    }
+
+    static LocalFileSystem newFileSystem(Path baseDir) {
+        return new LocalFileSystem(LocalFileSystemConfig.builder()
+            .basePath(baseDir.toString())
+            .maxConnections(10)
+            .timeoutMillis(5000)
+            .build());
+    }
+
+    /**
+     * Creates {@code entries} empty files directly inside {@code dir}.
+     */
+    static void createFlatDirectory(Path dir, int entries) throws IOException {
+        Files.createDirectories(dir);
+        for (int i = 0; i < entries; i++) {
+            Files.createFile(dir.resolve(entryName(i)));
+        }
+    }
+
+    /**
+     * Creates a tree of roughly {@code entries} files below {@code dir}, with {@code fanout}
+     * subdirectories per level and {@code fanout} files per directory. The tree is filled level by
+     * level, so it is about log_fanout(entries) levels deep.
+     */
+    static void createTree(Path dir, int entries, int fanout) throws IOException {
+        Deque<Path> pending = new ArrayDeque<>();
+        pending.add(dir);
+        int remaining = entries;
+        while (remaining > 0) {
+            Path current = pending.removeFirst();
+            Files.createDirectories(current);
+            for (int i = 0; i < fanout && remaining > 0; i++, remaining--) {
+                Files.createFile(current.resolve(entryName(i)));
+            }
+            // Only filled once the whole level above has been, never ahead of its siblings
+            for (int i = 0; i < fanout && remaining > 0; i++) {
+                pending.addLast(current.resolve("dir-" + i));
+            }
+        }
+    }
+
+    /**
+     * Creates a file of {@code size} random bytes; the content is written so reads hit real data.
+     */
+    static void createFile(Path file, long size) throws IOException {
+        Files.createDirectories(file.getParent());
+        byte[] chunk = new byte[(int) Math.min(WRITE_CHUNK, Math.max(size, 1))];
+        new Random(size).nextBytes(chunk);
+        try (OutputStream os = Files.newOutputStream(file)) {
+            for (long written = 0; written < size; written += chunk.length) {
+                os.write(chunk, 0, (int) Math.min(chunk.length, size - written));
+            }
+        }
+    }
+
+    static String entryName(int index) {
+        return String.format("entry-%07d.dat", index);
+    }
+}
@@ -0,0 +1,71 @@
+package net.sanyal.fshandler.benchmark;
+
+import net.sanyal.fshandler.core.config.LocalFileSystemConfig;
+import net.sanyal.fshandler.core.model.FileMetadata;
+import net.sanyal.fshandler.local.LocalFileSystem;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sequential versus fork-join {@link LocalFileSystem#listRecursive} on wide and deep trees.
+ * <p>
+ * The wide tree has 100 subdirectories and 100 files per directory, so its 100000 entries sit in
+ * two levels of subdirectories; the deep tree has 2 of each and nests 15 levels for the same number
+ * of entries, with far less work per directory. {@code walker} is {@code sequential}, or
+ * {@code parallel-<n>} for the fork-join walker on n threads, with an {@code -unordered} suffix to
+ * skip its sorting. The sequential walker has no unordered variant, so that pairing is not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class LocalParallelListingBenchmark {
+    private static final String TREE = "tree";
+
+    @Param({"100000"})
+    int entries;
+
+    @Param({"wide", "deep"})
+    String shape;
+
+    @Param({"sequential", "parallel-4", "parallel-4-unordered", "parallel-16", "parallel-16-unordered"})
+    String walker;
+
+    private Path baseDir;
+    private LocalFileSystem fileSystem;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        baseDir = Files.createTempDirectory("fs-handler-parallel-list-bench");
+        LocalFixtures.createTree(baseDir.resolve(TREE), entries, "wide".equals(shape) ? 100 : 2);
+        String[] parts = walker.split("-");
+        int parallelism = "sequential".equals(walker) ? 1 : Integer.parseInt(parts[1]);
+        boolean deterministic = !walker.endsWith("-unordered");
+        fileSystem = new LocalFileSystem(LocalFileSystemConfig.builder()
+            .basePath(baseDir.toString())
+            .maxConnections(10)
+            .timeoutMillis(5000)
+            .listParallelism(parallelism)
+            .deterministicListOrder(deterministic)
+            .build());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        fileSystem.close();
+        FileSystemUtils.deleteRecursively(baseDir);
+    }
+
+    @Benchmark
+    public List<FileMetadata> listRecursive() {
+        return fileSystem.listRecursive(TREE, null);
+    }
+}
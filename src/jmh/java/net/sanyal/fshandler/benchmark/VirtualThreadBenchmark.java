@@ -0,0 +1,133 @@
+package net.sanyal.fshandler.benchmark;
+
+import net.sanyal.fshandler.Application;
+import net.sanyal.fshandler.core.FileSystem;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares request throughput of the service on Tomcat's platform thread pool against virtual threads.
+ * <p>
+ * Each trial boots the whole application on a random port, with {@code spring.threads.virtual.enabled}
+ * set from {@code threading}. Each invocation then sends a burst of {@code concurrentRequests}
+ * simultaneous {@code GET /api/v1/fs/file} requests over their own connections, so every request
+ * passes through Tomcat, the controller and the backend. Requests per second are the reported score
+ * multiplied by {@code concurrentRequests}.
+ * <p>
+ * The local backend answers from the page cache, so it mostly measures the server's own overhead. The
+ * S3 backend is where blocking on the network shows: run it against LocalStack or MinIO with
+ * {@code -p backend=s3 -jvmArgsAppend "-Daws.endpoint-url=http://localhost:4566 -Dfs.bench.s3.bucket=bench"}
+ * and credentials in {@code AWS_ACCESS_KEY_ID} and {@code AWS_SECRET_ACCESS_KEY} (LocalStack takes
+ * {@code test} for both). Every request holds a socket on both ends, so the open file limit must
+ * allow twice {@code concurrentRequests}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class VirtualThreadBenchmark {
+    private static final String HOT_FILE = "hot.txt";
+
+    @Param({"1000", "2000"})
+    int concurrentRequests;
+
+    @Param({"platform", "virtual"})
+    String threading;
+
+    @Param({"local"})
+    String backend;
+
+    private Path baseDir;
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private ExecutorService clientExecutor;
+    private URI hotFileUri;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String basePath;
+        if ("s3".equals(backend)) {
+            basePath = System.getProperty("fs.bench.s3.bucket");
+            if (basePath == null) {
+                throw new IllegalStateException("The s3 backend needs -Dfs.bench.s3.bucket and -Daws.endpoint-url");
+            }
+        } else {
+            baseDir = Files.createTempDirectory("fs-handler-vt-bench");
+            basePath = baseDir.toString();
+        }
+        context = new SpringApplicationBuilder(Application.class).run(
+            "--server.port=0",
+            "--filesystem.type=" + backend,
+            "--filesystem.basePath=" + basePath,
+            "--filesystem.s3.region=" + System.getProperty("aws.region", "us-east-1"),
+            "--filesystem.s3.accessKey=" + System.getenv().getOrDefault("AWS_ACCESS_KEY_ID", "test"),
+            "--filesystem.s3.secretKey=" + System.getenv().getOrDefault("AWS_SECRET_ACCESS_KEY", "test"),
+            "--spring.threads.virtual.enabled=" + "virtual".equals(threading),
+            "--logging.level.root=WARN");
+        try (OutputStream os = context.getBean(FileSystem.class).writeFile(HOT_FILE)) {
+            os.write(new byte[4096]);
+        }
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        hotFileUri = URI.create("http://localhost:" + port + "/api/v1/fs/file?path=" + HOT_FILE);
+        // The client's own threads must not be what limits the burst
+        clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(30))
+            .executor(clientExecutor)
+            .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        clientExecutor.shutdownNow();
+        if (context != null) {
+            context.close();
+        }
+        if (baseDir != null) {
+            FileSystemUtils.deleteRecursively(baseDir);
+        }
+    }
+
+    @Benchmark
+    public void concurrentRequests(Blackhole blackhole) throws Exception {
+        List<Future<Integer>> responses = new ArrayList<>(concurrentRequests);
+        for (int i = 0; i < concurrentRequests; i++) {
+            responses.add(clientExecutor.submit(this::sendRequest));
+        }
+        for (Future<Integer> response : responses) {
+            blackhole.consume(response.get());
+        }
+    }
+
+    private int sendRequest() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(hotFileUri).GET().build(),
+            HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode() + " for " + hotFileUri);
+        }
+        return response.body().length;
+    }
+}
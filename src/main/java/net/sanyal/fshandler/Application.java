@@ -1,17 +1,29 @@
 package net.sanyal.fshandler;
 
 import net.sanyal.fshandler.core.FileSystem;
+import net.sanyal.fshandler.core.cache.CachingFileSystem;
+import net.sanyal.fshandler.core.index.IndexingFileSystem;
+import net.sanyal.fshandler.core.index.MetadataIndex;
 import net.sanyal.fshandler.core.config.LocalFileSystemConfig;
+import net.sanyal.fshandler.core.config.MetadataCacheConfig;
+import net.sanyal.fshandler.core.config.MetadataIndexConfig;
 import net.sanyal.fshandler.core.config.S3FileSystemConfig;
 import net.sanyal.fshandler.local.LocalFileSystem;
 import net.sanyal.fshandler.s3.S3FileSystem;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 
+import java.nio.file.Paths;
+
 @SpringBootApplication
 public class Application {
+    private static final int MAX_CONNECTIONS = 50;
+    private static final long TIMEOUT_MILLIS = 5000;
+
     @Value("${filesystem.type:local}")
     private String fsType;
 
@@ -27,29 +39,102 @@ public class Application {
     @Value("${filesystem.s3.secretKey:#{null}}")
     private String secretKey;
 
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${filesystem.local.list-parallelism:1}")
+    private int listParallelism;
+
+    @Value("${filesystem.local.deterministic-list-order:true}")
+    private boolean deterministicListOrder;
+
+    @Value("${filesystem.local.list-cache-max-directories:0}")
+    private int listCacheMaxDirectories;
+
+    @Value("${filesystem.local.delete-parallelism:1}")
+    private int deleteParallelism;
+
+    @Value("${filesystem.metadata-cache.enabled:false}")
+    private boolean metadataCacheEnabled;
+
+    @Value("${filesystem.metadata-cache.max-entries:10000}")
+    private int metadataCacheMaxEntries;
+
+    @Value("${filesystem.metadata-cache.ttl-millis:5000}")
+    private long metadataCacheTtlMillis;
+
+    @Value("${filesystem.metadata-cache.negative-ttl-millis:1000}")
+    private long metadataCacheNegativeTtlMillis;
+
+    @Value("${filesystem.metadata-index.directory:/tmp/fs-handler-index}")
+    private String metadataIndexDirectory;
+
+    @Value("${filesystem.metadata-index.rebuild-interval-millis:3600000}")
+    private long metadataIndexRebuildIntervalMillis;
+
+    @Value("${filesystem.metadata-index.max-entries:1000000}")
+    private long metadataIndexMaxEntries;
+
     public static void main(String[] args) {
         SpringApplication.run(Application.class, args);
     }
 
     @Bean
-    public FileSystem fileSystem() {
-        if ("s3".equals(fsType)) {
-            S3FileSystemConfig config = S3FileSystemConfig.builder()
-                .bucketName(basePath)
-                .region(region)
-                .accessKey(accessKey)
-                .secretKey(secretKey)
-                .maxConnections(50)
-                .timeoutMillis(5000)
-                .build();
-            return new S3FileSystem(config);
-        } else {
-            LocalFileSystemConfig config = LocalFileSystemConfig.builder()
-                .basePath(basePath)
-                .maxConnections(50)
-                .timeoutMillis(5000)
-                .build();
-            return new LocalFileSystem(config);
+    @ConditionalOnProperty(name = "filesystem.metadata-index.enabled", havingValue = "true")
+    public MetadataIndex metadataIndex() {
+        MetadataIndexConfig config = metadataIndexConfig();
+        return new MetadataIndex(Paths.get(config.getDirectory()), config.getMaxEntries());
+    }
+
+    @Bean
+    public FileSystem fileSystem(ObjectProvider<MetadataIndex> metadataIndex) {
+        FileSystem fileSystem = "s3".equals(fsType)
+            ? new S3FileSystem(s3Config())
+            : new LocalFileSystem(localConfig());
+        MetadataIndex index = metadataIndex.getIfAvailable();
+        if (index != null) {
+            fileSystem = new IndexingFileSystem(fileSystem, index, metadataIndexConfig());
+        }
+        if (metadataCacheEnabled) {
+            return new CachingFileSystem(fileSystem, MetadataCacheConfig.builder()
+                .maxEntries(metadataCacheMaxEntries)
+                .ttlMillis(metadataCacheTtlMillis)
+                .negativeTtlMillis(metadataCacheNegativeTtlMillis)
+                .build());
         }
+        return fileSystem;
+    }
+
+    private MetadataIndexConfig metadataIndexConfig() {
+        return MetadataIndexConfig.builder()
+            .directory(metadataIndexDirectory)
+            .rebuildIntervalMillis(metadataIndexRebuildIntervalMillis)
+            .maxEntries(metadataIndexMaxEntries)
+            .build();
+    }
+
+    private S3FileSystemConfig s3Config() {
+        return S3FileSystemConfig.builder()
+            .bucketName(basePath)
+            .region(region)
+            .accessKey(accessKey)
+            .secretKey(secretKey)
+            .maxConnections(MAX_CONNECTIONS)
+            .timeoutMillis(TIMEOUT_MILLIS)
+            .virtualThreads(virtualThreads)
+            .build();
+    }
+
+    private LocalFileSystemConfig localConfig() {
+        return LocalFileSystemConfig.builder()
+            .basePath(basePath)
+            .maxConnections(MAX_CONNECTIONS)
+            .timeoutMillis(TIMEOUT_MILLIS)
+            .virtualThreads(virtualThreads)
+            .listParallelism(listParallelism)
+            .deterministicListOrder(deterministicListOrder)
+            .listCacheMaxDirectories(listCacheMaxDirectories)
+            .deleteParallelism(deleteParallelism)
+            .build();
     }
 }
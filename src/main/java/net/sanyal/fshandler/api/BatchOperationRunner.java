@@ -0,0 +1,306 @@
+package net.sanyal.fshandler.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import net.sanyal.fshandler.core.FileSystem;
+import net.sanyal.fshandler.core.PathNotFoundException;
+import net.sanyal.fshandler.core.model.BatchOperation;
+import net.sanyal.fshandler.core.model.BatchResult;
+import net.sanyal.fshandler.core.model.FileMetadata;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Runs the operations of a batch request and writes one newline-delimited JSON result per operation,
+ * in request order.
+ * <p>
+ * Up to {@code concurrency} operations run at once on virtual threads. An operation only starts once
+ * no earlier operation still running touches the same path, one of its ancestors or one of its
+ * descendants, so "mkdir a; create a/x; move a/x b/x" behaves as if run one by one, while
+ * operations on unrelated paths overlap. A result is written once every earlier one has been; a slow
+ * operation holds back the results after it, but not their execution, as long as the window has room.
+ * Consecutive deletes of unrelated paths are handed to {@link FileSystem#deleteAll} together so that
+ * the backend can group them.
+ */
+@Slf4j
+final class BatchOperationRunner {
+    /** Most consecutive deletes handed to the backend as one group */
+    static final int MAX_GROUPED_DELETES = 1000;
+
+    private final FileSystem fileSystem;
+    private final ObjectMapper objectMapper;
+    private final Consumer<BatchOperation> validator;
+    private final int concurrency;
+
+    BatchOperationRunner(FileSystem fileSystem, ObjectMapper objectMapper, Consumer<BatchOperation> validator, int concurrency) {
+        this.fileSystem = fileSystem;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.concurrency = concurrency;
+    }
+
+    void run(Iterator<BatchOperation> operations, OutputStream out) throws IOException {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Window window = new Window(executor, out);
+            for (int index = 0; ; index++) {
+                BatchOperation operation;
+                try {
+                    if (!operations.hasNext()) {
+                        break;
+                    }
+                    operation = operations.next();
+                } catch (RuntimeException e) {
+                    // The rest of the body cannot be resynchronised after a malformed entry, so the batch ends there
+                    log.debug("Stopping batch at malformed operation {}: {}", index, e.getMessage());
+                    window.finish();
+                    window.write(List.of(BatchResult.builder()
+                        .index(index)
+                        .status(400)
+                        .error("Invalid operation: " + e.getMessage())
+                        .build()));
+                    out.flush();
+                    return;
+                }
+                window.add(index, operation != null ? operation : BatchOperation.builder().build());
+            }
+            window.finish();
+        }
+    }
+
+    /** The paths an operation reads or changes, normalised so that nested paths share their prefix */
+    private static List<String> touchedPaths(BatchOperation operation) {
+        String path = normalise(operation.getPath());
+        return switch (operation.getOp() != null ? operation.getOp() : BatchOperation.Type.GET_METADATA) {
+            case MOVE, COPY -> List.of(path, normalise(operation.getDestination()));
+            case RENAME -> {
+                int slash = path.lastIndexOf('/');
+                yield List.of(path, normalise((slash < 0 ? "" : path.substring(0, slash + 1)) + operation.getNewName()));
+            }
+            default -> List.of(path);
+        };
+    }
+
+    /** Strips what does not change the target, so "./a/b/" and "a/b" compare equal; the root becomes "" */
+    private static String normalise(String path) {
+        if (path == null || path.equals(".")) {
+            return "";
+        }
+        String normalised = path;
+        while (normalised.startsWith("./") || normalised.startsWith("/")) {
+            normalised = normalised.substring(normalised.startsWith("/") ? 1 : 2);
+        }
+        while (normalised.endsWith("/")) {
+            normalised = normalised.substring(0, normalised.length() - 1);
+        }
+        return normalised;
+    }
+
+    /** Whether {@code path} equals, contains or lies below any of {@code paths} */
+    private static boolean overlaps(NavigableSet<String> paths, String path) {
+        if (paths.isEmpty()) {
+            return false;
+        }
+        if (path.isEmpty() || paths.contains("")) {
+            return true;
+        }
+        for (String ancestor = path; ; ancestor = ancestor.substring(0, ancestor.lastIndexOf('/'))) {
+            if (paths.contains(ancestor)) {
+                return true;
+            }
+            if (ancestor.indexOf('/') < 0) {
+                break;
+            }
+        }
+        String below = paths.ceiling(path + "/");
+        return below != null && below.startsWith(path + "/");
+    }
+
+    private BatchResult execute(int index, BatchOperation operation) {
+        BatchResult.BatchResultBuilder result = BatchResult.builder()
+            .index(index)
+            .op(operation.getOp())
+            .path(operation.getPath());
+        try {
+            validator.accept(operation);
+            FileMetadata metadata = switch (operation.getOp()) {
+                case CREATE -> fileSystem.createFile(operation.getPath());
+                case MKDIR -> fileSystem.createDirectory(operation.getPath());
+                case MOVE -> fileSystem.move(operation.getPath(), operation.getDestination());
+                case COPY -> fileSystem.copy(operation.getPath(), operation.getDestination());
+                case RENAME -> fileSystem.rename(operation.getPath(), operation.getNewName());
+                case GET_METADATA -> fileSystem.getMetadata(operation.getPath());
+                case DELETE -> {
+                    fileSystem.delete(operation.getPath());
+                    yield null;
+                }
+            };
+            return result.status(metadata != null ? 200 : 204).metadata(metadata).build();
+        } catch (RuntimeException e) {
+            return failed(result, e);
+        }
+    }
+
+    private List<BatchResult> deleteAll(List<Entry> group) {
+        Map<Integer, RuntimeException> invalid = new HashMap<>();
+        List<String> paths = new ArrayList<>(group.size());
+        for (Entry entry : group) {
+            try {
+                validator.accept(entry.operation());
+                paths.add(entry.operation().getPath());
+            } catch (RuntimeException e) {
+                invalid.put(entry.index(), e);
+            }
+        }
+        Map<String, RuntimeException> failures;
+        RuntimeException groupFailure = null;
+        try {
+            failures = paths.isEmpty() ? Map.of() : fileSystem.deleteAll(paths);
+        } catch (RuntimeException e) {
+            failures = Map.of();
+            groupFailure = e;
+        }
+        List<BatchResult> results = new ArrayList<>(group.size());
+        for (Entry entry : group) {
+            BatchResult.BatchResultBuilder result = BatchResult.builder()
+                .index(entry.index())
+                .op(BatchOperation.Type.DELETE)
+                .path(entry.operation().getPath());
+            RuntimeException failure = invalid.get(entry.index());
+            if (failure == null) {
+                failure = groupFailure != null ? groupFailure : failures.get(entry.operation().getPath());
+            }
+            results.add(failure != null ? failed(result, failure) : result.status(204).build());
+        }
+        return results;
+    }
+
+    private static BatchResult failed(BatchResult.BatchResultBuilder result, RuntimeException e) {
+        int status;
+        if (e instanceof PathNotFoundException) {
+            status = 404;
+        } else if (e instanceof IllegalArgumentException) {
+            status = 400;
+        } else {
+            status = 500;
+            log.error("Batch operation failed: {}", e.getMessage(), e);
+        }
+        return result.status(status).error(e.getMessage()).build();
+    }
+
+    private static List<BatchResult> await(Future<List<BatchResult>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for batch operation");
+        } catch (ExecutionException e) {
+            // Operations turn their own exceptions into results, so this is only ever an Error
+            throw new IllegalStateException("Batch operation failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private record Entry(int index, BatchOperation operation) {
+    }
+
+    /** A started operation, or group of deletes, and the paths it touches */
+    private record Running(Future<List<BatchResult>> future, NavigableSet<String> paths) {
+        boolean blocks(Collection<String> others) {
+            return !future.isDone() && others.stream().anyMatch(other -> overlaps(paths, other));
+        }
+    }
+
+    /** Operations that have been started but whose results are not written yet, oldest first */
+    private final class Window {
+        private final ExecutorService executor;
+        private final OutputStream out;
+        private final Deque<Running> pending = new ArrayDeque<>();
+        private final List<Entry> deletes = new ArrayList<>();
+        private final NavigableSet<String> deletePaths = new TreeSet<>();
+
+        Window(ExecutorService executor, OutputStream out) {
+            this.executor = executor;
+            this.out = out;
+        }
+
+        void add(int index, BatchOperation operation) throws IOException {
+            if (operation.getOp() != BatchOperation.Type.DELETE) {
+                submitDeletes();
+                submit(() -> List.of(execute(index, operation)), new TreeSet<>(touchedPaths(operation)));
+                return;
+            }
+            // A group deletes in no particular order, so a path nested in, or repeating, one already
+            // in it starts a new group
+            String path = normalise(operation.getPath());
+            if (overlaps(deletePaths, path)) {
+                submitDeletes();
+            }
+            deletePaths.add(path);
+            deletes.add(new Entry(index, operation));
+            if (deletes.size() == MAX_GROUPED_DELETES) {
+                submitDeletes();
+            }
+        }
+
+        void finish() throws IOException {
+            submitDeletes();
+            while (!pending.isEmpty()) {
+                writeOldest();
+            }
+            out.flush();
+        }
+
+        void write(List<BatchResult> results) throws IOException {
+            for (BatchResult result : results) {
+                out.write(objectMapper.writeValueAsBytes(result));
+                out.write('\n');
+            }
+        }
+
+        private void submitDeletes() throws IOException {
+            if (deletes.isEmpty()) {
+                return;
+            }
+            List<Entry> group = List.copyOf(deletes);
+            NavigableSet<String> paths = new TreeSet<>(deletePaths);
+            deletes.clear();
+            deletePaths.clear();
+            submit(() -> deleteAll(group), paths);
+        }
+
+        private void submit(Callable<List<BatchResult>> task, NavigableSet<String> paths) throws IOException {
+            // Writes whatever has finished in order, and waits for the oldest operation while the window
+            // is full or an operation on an overlapping path is still running
+            while (!pending.isEmpty() && (pending.size() >= concurrency || pending.peekFirst().future().isDone()
+                || pending.stream().anyMatch(running -> running.blocks(paths)))) {
+                writeOldest();
+            }
+            pending.addLast(new Running(executor.submit(task), paths));
+        }
+
+        private void writeOldest() throws IOException {
+            if (!pending.peekFirst().future().isDone()) {
+                // Results already written should reach the client while this one is still running
+                out.flush();
+            }
+            write(await(pending.removeFirst().future()));
+        }
+    }
+}
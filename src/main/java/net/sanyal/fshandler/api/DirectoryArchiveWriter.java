@@ -0,0 +1,244 @@
+package net.sanyal.fshandler.api;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import net.sanyal.fshandler.core.FileSystem;
+import net.sanyal.fshandler.core.PathNotFoundException;
+import net.sanyal.fshandler.core.io.BoundedInputStream;
+import net.sanyal.fshandler.core.io.TarOutputStream;
+import net.sanyal.fshandler.core.model.FileMetadata;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a directory tree as a zip or tar archive while it is still being listed and read, without
+ * staging the archive on disk or in memory.
+ * <p>
+ * Files without a local path, such as S3 objects, are fetched ahead of the entry being written: up
+ * to {@code prefetchEntries} upcoming files of at most 1 MB are read into memory concurrently on
+ * virtual threads, so their request latency overlaps with writing the entries before them. Larger
+ * files are opened when their turn comes and rely on the backend's own read-ahead. Files that
+ * disappear between being listed and being read are left out.
+ */
+@Slf4j
+final class DirectoryArchiveWriter {
+    /** Largest file read ahead into memory */
+    static final int MAX_PREFETCH_BYTES = 1024 * 1024;
+
+    @Getter
+    enum Format {
+        ZIP("zip", "application/zip"),
+        TAR("tar", "application/x-tar");
+
+        private final String extension;
+        private final String contentType;
+
+        Format(String extension, String contentType) {
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+
+        static Format of(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid format: must be zip or tar");
+            }
+        }
+    }
+
+    private final FileSystem fileSystem;
+    private final int prefetchEntries;
+
+    DirectoryArchiveWriter(FileSystem fileSystem, int prefetchEntries) {
+        this.fileSystem = fileSystem;
+        this.prefetchEntries = prefetchEntries;
+    }
+
+    /**
+     * Writes {@code entries}, the recursive listing of {@code rootPath}, as an archive whose entries
+     * all sit below a directory named like the root. The stream is finished but not closed.
+     */
+    void write(String rootPath, Stream<FileMetadata> entries, Format format, OutputStream out) throws IOException {
+        String rootName = rootPath.substring(rootPath.lastIndexOf('/') + 1);
+        ArchiveSink sink = format == Format.ZIP ? new ZipSink(out) : new TarSink(out);
+        Deque<Pending> window = new ArrayDeque<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            try {
+                sink.directory(rootName, null);
+                Iterator<FileMetadata> it = entries.iterator();
+                while (it.hasNext() || !window.isEmpty()) {
+                    while (it.hasNext() && window.size() <= prefetchEntries) {
+                        window.addLast(schedule(it.next(), executor));
+                    }
+                    Pending next = window.removeFirst();
+                    String name = entryName(rootPath, rootName, next.metadata());
+                    if (name != null) {
+                        writeEntry(name, next, sink);
+                    }
+                }
+                sink.finish();
+            } finally {
+                // Prefetches nobody is going to write any more
+                window.forEach(pending -> {
+                    if (pending.content() != null) {
+                        pending.content().cancel(true);
+                    }
+                });
+            }
+        }
+    }
+
+    private Pending schedule(FileMetadata metadata, ExecutorService executor) {
+        if (metadata.isDirectory() || metadata.getSize() > MAX_PREFETCH_BYTES
+            || fileSystem.getLocalPath(metadata.getPath()).isPresent()) {
+            return new Pending(metadata, null);
+        }
+        return new Pending(metadata, executor.submit(() -> {
+            try (InputStream in = new BoundedInputStream(fileSystem.readFile(metadata.getPath()), metadata.getSize())) {
+                return in.readAllBytes();
+            }
+        }));
+    }
+
+    private void writeEntry(String name, Pending pending, ArchiveSink sink) throws IOException {
+        FileMetadata metadata = pending.metadata();
+        if (metadata.isDirectory()) {
+            sink.directory(name, metadata.getLastModifiedTime());
+            return;
+        }
+        InputStream content;
+        try {
+            content = pending.content() != null
+                ? new ByteArrayInputStream(await(pending.content()))
+                : fileSystem.readFile(metadata.getPath());
+        } catch (PathNotFoundException e) {
+            log.warn("Leaving '{}' out of the archive, it was deleted after being listed", metadata.getPath());
+            return;
+        }
+        try (content) {
+            sink.file(name, metadata.getSize(), metadata.getLastModifiedTime(), content);
+        }
+    }
+
+    /** Name of an entry inside the archive, or null for an entry that is not below the root */
+    private static String entryName(String rootPath, String rootName, FileMetadata metadata) {
+        String path = metadata.getPath();
+        if (!path.startsWith(rootPath + "/")) {
+            log.warn("Leaving '{}' out of the archive of '{}', it is not below it", path, rootPath);
+            return null;
+        }
+        return rootName + path.substring(rootPath.length());
+    }
+
+    private static byte[] await(Future<byte[]> content) throws IOException {
+        try {
+            return content.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading ahead");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException("Failed to read ahead: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /** A listed entry along with its content, when that is being read ahead */
+    private record Pending(FileMetadata metadata, Future<byte[]> content) {
+    }
+
+    private interface ArchiveSink {
+        void directory(String name, Instant lastModified) throws IOException;
+
+        void file(String name, long size, Instant lastModified, InputStream content) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    private static final class ZipSink implements ArchiveSink {
+        private final ZipOutputStream zip;
+
+        ZipSink(OutputStream out) {
+            this.zip = new ZipOutputStream(out);
+            // Keeps compression from becoming the bottleneck of the download
+            zip.setLevel(Deflater.BEST_SPEED);
+        }
+
+        @Override
+        public void directory(String name, Instant lastModified) throws IOException {
+            zip.putNextEntry(entry(name + "/", lastModified));
+            zip.closeEntry();
+        }
+
+        @Override
+        public void file(String name, long size, Instant lastModified, InputStream content) throws IOException {
+            zip.putNextEntry(entry(name, lastModified));
+            content.transferTo(zip);
+            zip.closeEntry();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            zip.finish();
+            zip.flush();
+        }
+
+        private static ZipEntry entry(String name, Instant lastModified) {
+            ZipEntry entry = new ZipEntry(name);
+            if (lastModified != null) {
+                entry.setLastModifiedTime(FileTime.from(lastModified));
+            }
+            return entry;
+        }
+    }
+
+    private static final class TarSink implements ArchiveSink {
+        private final TarOutputStream tar;
+
+        TarSink(OutputStream out) {
+            this.tar = new TarOutputStream(out);
+        }
+
+        @Override
+        public void directory(String name, Instant lastModified) throws IOException {
+            tar.putEntry(name, 0, lastModified, true);
+        }
+
+        @Override
+        public void file(String name, long size, Instant lastModified, InputStream content) throws IOException {
+            // The header has already announced the listed size, which is all that can be written now
+            tar.putEntry(name, size, lastModified, false);
+            new BoundedInputStream(content, size).transferTo(tar);
+            tar.closeEntry();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            tar.finish();
+            tar.flush();
+        }
+    }
+}
@@ -1,31 +1,79 @@
 package net.sanyal.fshandler.api;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import net.sanyal.fshandler.core.FileSystem;
+import net.sanyal.fshandler.core.PathNotFoundException;
+import net.sanyal.fshandler.core.index.MetadataIndex;
+import net.sanyal.fshandler.core.io.Abortable;
+import net.sanyal.fshandler.core.model.BatchOperation;
+import net.sanyal.fshandler.core.model.FileListPage;
 import net.sanyal.fshandler.core.model.FileMetadata;
+import net.sanyal.fshandler.core.model.FileQuery;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/v1/fs")
 @RequiredArgsConstructor
 @Tag(name = "File System", description = "File System operations API")
 public class FileSystemController {
 
+    // Tomcat request attributes for handing a file to the connector's sendfile support
+    private static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+    private static final int MAX_PAGE_SIZE = 10_000;
+    private static final int NDJSON_FLUSH_INTERVAL = 256;
+    private static final int DEFAULT_BATCH_CONCURRENCY = 16;
+    private static final int MAX_BATCH_CONCURRENCY = 256;
+    private static final int ARCHIVE_PREFETCH_ENTRIES = 16;
+
     private final FileSystem fileSystem;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<MetadataIndex> metadataIndex;
 
     private void validatePath(String path) {
         if (path == null || path.isEmpty()) {
@@ -40,6 +88,48 @@ public class FileSystemController {
         }
     }
 
+    /**
+     * Builds the listing query from the request filters, or returns null when none is set. A glob with
+     * a '/' is relative to the listed directory, so it is anchored there; an empty path means the root.
+     */
+    private FileQuery buildQuery(String path, String filter, Set<String> extensions, Long minSize, Long maxSize,
+                                 String modifiedAfter, String modifiedBefore, String type, Integer maxResults) {
+        if (filter == null && extensions == null && minSize == null && maxSize == null && modifiedAfter == null
+            && modifiedBefore == null && type == null && maxResults == null) {
+            return null;
+        }
+        if (filter != null && (filter.startsWith("/") || filter.contains(".."))) {
+            throw new IllegalArgumentException("Invalid filter: absolute paths and path traversal not allowed");
+        }
+        FileQuery.EntryType entryType;
+        try {
+            entryType = type != null ? FileQuery.EntryType.valueOf(type.toUpperCase(java.util.Locale.ROOT)) : null;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid type: must be all, files or directories");
+        }
+        return FileQuery.builder()
+            .glob(filter != null && filter.indexOf('/') >= 0 && !path.isEmpty() ? path + "/" + filter : filter)
+            .extensions(extensions)
+            .minSize(minSize)
+            .maxSize(maxSize)
+            .modifiedAfter(parseInstant("modifiedAfter", modifiedAfter))
+            .modifiedBefore(parseInstant("modifiedBefore", modifiedBefore))
+            .entryType(entryType)
+            .maxResults(maxResults)
+            .build();
+    }
+
+    private Instant parseInstant(String name, String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": expected an ISO-8601 instant");
+        }
+    }
+
     private void validateNewName(String newName) {
         if (newName == null || newName.isEmpty() || newName.contains("..") || newName.contains("/")) {
             throw new IllegalArgumentException("Invalid new name");
@@ -77,22 +167,126 @@ public class FileSystemController {
     @Operation(summary = "Read file contents")
     @ApiResponses({
         @ApiResponse(responseCode = "200", description = "File content retrieved successfully"),
+        @ApiResponse(responseCode = "206", description = "Requested byte range retrieved successfully"),
         @ApiResponse(responseCode = "404", description = "File not found"),
+        @ApiResponse(responseCode = "416", description = "Requested byte range is not satisfiable"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @GetMapping("/file")
-    public ResponseEntity<byte[]> readFile(
+    public ResponseEntity<Resource> readFile(
             @Parameter(description = "Path to the file to read") 
-            @RequestParam String path) throws IOException {
+            @RequestParam String path,
+            @Parameter(description = "Single byte range to read (e.g., bytes=0-1023, bytes=-500)")
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @Parameter(description = "Honor the range only if the file was last modified at this HTTP date")
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            @Parameter(description = "Current HTTP request", hidden = true)
+            HttpServletRequest request) throws IOException {
         validatePath(path);
-        try (InputStream is = fileSystem.readFile(path)) {
-            byte[] content = StreamUtils.copyToByteArray(is);
-            return ResponseEntity.ok(content);
-        } catch (java.io.FileNotFoundException e) {
-            return ResponseEntity.notFound().build();
+        Optional<Path> localPath = fileSystem.getLocalPath(path);
+        FileMetadata metadata = null;
+        if (range != null) {
+            HttpRange httpRange = parseSingleRange(range);
+            if (httpRange != null) {
+                metadata = fileSystem.getMetadata(path);
+                if (ifRangeMatches(ifRange, metadata)) {
+                    return readRange(path, httpRange, metadata, localPath, request);
+                }
+            }
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM);
+        if (localPath.isPresent() && isSendfileSupported(request)) {
+            // Let the connector copy the file straight from the page cache to the socket
+            long length = Files.size(localPath.get());
+            setSendfileAttributes(request, localPath.get(), 0, length);
+            return response.contentLength(length)
+                    .lastModified(Files.getLastModifiedTime(localPath.get()).toInstant())
+                    .build();
+        }
+        // Clients resuming an interrupted download send this date back as If-Range
+        if (metadata == null) {
+            metadata = fileSystem.getMetadata(path);
+        }
+        if (metadata.getLastModifiedTime() != null) {
+            response.lastModified(metadata.getLastModifiedTime());
+        }
+        // The stream is copied to the response with a fixed-size buffer and closed by the
+        // message converter, so heap usage does not depend on the file size
+        InputStream is = fileSystem.readFile(path);
+        return response.body(new InputStreamResource(is));
+    }
+
+    private ResponseEntity<Resource> readRange(String path, HttpRange range, FileMetadata metadata,
+                                               Optional<Path> localPath, HttpServletRequest request) {
+        long size = metadata.getSize();
+        long start;
+        long end;
+        try {
+            start = range.getRangeStart(size);
+            end = range.getRangeEnd(size);
+        } catch (IllegalArgumentException e) {
+            start = 0;
+            end = -1;
+        }
+        if (end < start) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                    .build();
+        }
+        long length = end - start + 1;
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size)
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(length);
+        if (metadata.getLastModifiedTime() != null) {
+            response.lastModified(metadata.getLastModifiedTime());
+        }
+        if (localPath.isPresent() && isSendfileSupported(request)) {
+            setSendfileAttributes(request, localPath.get(), start, end + 1);
+            return response.build();
+        }
+        return response.body(new InputStreamResource(fileSystem.readFile(path, start, length)));
+    }
+
+    private HttpRange parseSingleRange(String range) {
+        // Malformed and multi-range requests are answered with the whole file
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(range);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
         }
     }
 
+    private boolean ifRangeMatches(String ifRange, FileMetadata metadata) {
+        if (ifRange == null) {
+            return true;
+        }
+        // No entity tags are issued, so only the HTTP-date form can ever match
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/") || metadata.getLastModifiedTime() == null) {
+            return false;
+        }
+        try {
+            Instant date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return date.getEpochSecond() == metadata.getLastModifiedTime().getEpochSecond();
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private boolean isSendfileSupported(HttpServletRequest request) {
+        return Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE));
+    }
+
+    private void setSendfileAttributes(HttpServletRequest request, Path file, long start, long end) {
+        request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, file.toString());
+        request.setAttribute(SENDFILE_START_ATTRIBUTE, start);
+        request.setAttribute(SENDFILE_END_ATTRIBUTE, end);
+    }
+
     @Operation(summary = "Write content to a file")
     @ApiResponses({
         @ApiResponse(responseCode = "200", description = "File written successfully"),
@@ -112,30 +306,239 @@ public class FileSystemController {
         return fileSystem.getMetadata(path);
     }
 
+    @Operation(summary = "Upload raw file content from the request body")
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "File written successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid file path, or a body shorter than its Content-Length"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PutMapping(value = "/file", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public FileMetadata uploadFile(
+            @Parameter(description = "Path where the file should be written")
+            @RequestParam String path,
+            @Parameter(description = "Current HTTP request carrying the raw file content", hidden = true)
+            HttpServletRequest request) throws IOException {
+        validatePath(path);
+        long contentLength = request.getContentLengthLong();
+        // The body is piped straight into the backend without being spooled to a temp file
+        OutputStream os = fileSystem.writeFile(path, contentLength);
+        try (InputStream is = request.getInputStream()) {
+            long written = is.transferTo(os);
+            if (contentLength >= 0 && written != contentLength) {
+                throw new IllegalArgumentException("Invalid request body: received " + written
+                    + " bytes but Content-Length announced " + contentLength);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Closing would commit whatever arrived, so a cut-off body must not replace the file
+            log.warn("Discarding upload to '{}': {}", path, e.getMessage());
+            try {
+                Abortable.abort(os);
+            } catch (IOException | RuntimeException abortFailure) {
+                e.addSuppressed(abortFailure);
+            }
+            throw e;
+        }
+        os.close();
+        return fileSystem.getMetadata(path);
+    }
+
     @Operation(summary = "List directory contents")
     @ApiResponses({
         @ApiResponse(responseCode = "200", description = "Directory listing retrieved successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid path, filter, page limit or cursor"),
         @ApiResponse(responseCode = "404", description = "Directory not found"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @GetMapping("/list")
-    public List<FileMetadata> list(
+    public ResponseEntity<List<FileMetadata>> list(
             @Parameter(description = "Path to the directory to list") 
             @RequestParam String path,
             @Parameter(description = "Whether to list recursively") 
             @RequestParam(required = false) boolean recursive,
-            @Parameter(description = "Filter pattern (e.g., *.txt, *.java)") 
-            @RequestParam(required = false) String filter) {
+            @Parameter(description = "Glob filter; without a '/' it matches entry names (e.g., *.txt), with one it matches paths below the listed directory (e.g., 2024-*/*.log)") 
+            @RequestParam(required = false) String filter,
+            @Parameter(description = "Comma-separated file extensions to include (e.g., txt,java)")
+            @RequestParam(required = false) Set<String> extensions,
+            @Parameter(description = "Minimum size in bytes")
+            @RequestParam(required = false) Long minSize,
+            @Parameter(description = "Maximum size in bytes")
+            @RequestParam(required = false) Long maxSize,
+            @Parameter(description = "Only entries modified at or after this ISO-8601 instant")
+            @RequestParam(required = false) String modifiedAfter,
+            @Parameter(description = "Only entries modified before this ISO-8601 instant")
+            @RequestParam(required = false) String modifiedBefore,
+            @Parameter(description = "Entry type to include: all, files or directories")
+            @RequestParam(required = false) String type,
+            @Parameter(description = "Maximum number of entries in the whole listing")
+            @RequestParam(required = false) Integer maxResults,
+            @Parameter(description = "Maximum number of entries to return; enables paging via the " + NEXT_CURSOR_HEADER + " header")
+            @RequestParam(required = false) Integer limit,
+            @Parameter(description = "Cursor from the " + NEXT_CURSOR_HEADER + " header of the previous page")
+            @RequestParam(required = false) String cursor) {
+        validatePath(path);
+        FileQuery query = buildQuery(path, filter, extensions, minSize, maxSize, modifiedAfter, modifiedBefore, type, maxResults);
+        if (limit == null && cursor == null) {
+            return ResponseEntity.ok(recursive
+                ? fileSystem.listRecursive(path, query)
+                : fileSystem.list(path, query));
+        }
+
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Invalid limit: must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        FileListPage page = fileSystem.listPage(path, recursive, query, decodeCursor(cursor), pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            // Backend cursors are paths, which header values cannot carry beyond Latin-1
+            response.header(NEXT_CURSOR_HEADER, Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(page.getNextCursor().getBytes(StandardCharsets.UTF_8)));
+        }
+        return response.body(page.getItems());
+    }
+
+    private static String decodeCursor(String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + e.getMessage());
+        }
+    }
+
+    @Operation(summary = "Stream directory contents as newline-delimited JSON")
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Directory entries streamed as they are discovered"),
+        @ApiResponse(responseCode = "400", description = "Invalid path or filter"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping(value = "/list", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> listStream(
+            @Parameter(description = "Path to the directory to list")
+            @RequestParam String path,
+            @Parameter(description = "Whether to list recursively")
+            @RequestParam(required = false) boolean recursive,
+            @Parameter(description = "Glob filter; without a '/' it matches entry names (e.g., *.txt), with one it matches paths below the listed directory (e.g., 2024-*/*.log)")
+            @RequestParam(required = false) String filter,
+            @Parameter(description = "Comma-separated file extensions to include (e.g., txt,java)")
+            @RequestParam(required = false) Set<String> extensions,
+            @Parameter(description = "Minimum size in bytes")
+            @RequestParam(required = false) Long minSize,
+            @Parameter(description = "Maximum size in bytes")
+            @RequestParam(required = false) Long maxSize,
+            @Parameter(description = "Only entries modified at or after this ISO-8601 instant")
+            @RequestParam(required = false) String modifiedAfter,
+            @Parameter(description = "Only entries modified before this ISO-8601 instant")
+            @RequestParam(required = false) String modifiedBefore,
+            @Parameter(description = "Entry type to include: all, files or directories")
+            @RequestParam(required = false) String type,
+            @Parameter(description = "Maximum number of entries in the whole listing")
+            @RequestParam(required = false) Integer maxResults) {
         validatePath(path);
-        java.util.function.Predicate<FileMetadata> filterPredicate = filter != null ?
-            metadata -> java.nio.file.FileSystems.getDefault()
-                .getPathMatcher("glob:" + filter)
-                .matches(java.nio.file.Paths.get(metadata.getPath()).getFileName()) :
-            null;
-        if (recursive) {
-            return fileSystem.listRecursive(path, filterPredicate);
+        FileQuery query = buildQuery(path, filter, extensions, minSize, maxSize, modifiedAfter, modifiedBefore, type, maxResults);
+        // Open the listing before committing the response so that invalid paths still map to an error status
+        Stream<FileMetadata> entries = fileSystem.listStream(path, recursive, query);
+        StreamingResponseBody body = outputStream -> {
+            try (entries) {
+                int pending = 0;
+                for (Iterator<FileMetadata> it = entries.iterator(); it.hasNext(); ) {
+                    outputStream.write(objectMapper.writeValueAsBytes(it.next()));
+                    outputStream.write('\n');
+                    if (++pending == NDJSON_FLUSH_INTERVAL) {
+                        outputStream.flush();
+                        pending = 0;
+                    }
+                }
+                outputStream.flush();
+            } catch (RuntimeException e) {
+                // The status line has already been sent, so all that is left is to cut the stream short
+                log.error("Failed to stream directory listing of '{}': {}", path, e.getMessage(), e);
+                throw e;
+            }
+        };
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(body);
+    }
+
+    @Operation(summary = "Download a directory as a zip or tar archive")
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Archive streamed while the directory is being read"),
+        @ApiResponse(responseCode = "400", description = "Invalid path or archive format"),
+        @ApiResponse(responseCode = "404", description = "Directory not found"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping("/archive")
+    public ResponseEntity<StreamingResponseBody> archive(
+            @Parameter(description = "Path to the directory to archive")
+            @RequestParam String path,
+            @Parameter(description = "Archive format: zip or tar")
+            @RequestParam(required = false, defaultValue = "zip") String format) {
+        validatePath(path);
+        DirectoryArchiveWriter.Format archiveFormat = DirectoryArchiveWriter.Format.of(format);
+        String root = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        // Open the listing before committing the response so that invalid paths still map to an error status
+        Stream<FileMetadata> entries = fileSystem.listStream(root, true, null);
+        DirectoryArchiveWriter writer = new DirectoryArchiveWriter(fileSystem, ARCHIVE_PREFETCH_ENTRIES);
+        StreamingResponseBody body = outputStream -> {
+            try (entries) {
+                writer.write(root, entries, archiveFormat, outputStream);
+            } catch (IOException | RuntimeException e) {
+                // The status line has already been sent, so all that is left is to cut the stream short
+                log.error("Failed to stream archive of '{}': {}", path, e.getMessage(), e);
+                throw e;
+            }
+        };
+        String fileName = root.substring(root.lastIndexOf('/') + 1) + "." + archiveFormat.getExtension();
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(archiveFormat.getContentType()))
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(fileName, StandardCharsets.UTF_8).build().toString())
+            .body(body);
+    }
+
+    @Operation(summary = "Search the metadata index")
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Matching entries retrieved successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid prefix, filter or limit"),
+        @ApiResponse(responseCode = "500", description = "Internal server error"),
+        @ApiResponse(responseCode = "503", description = "Metadata index is not enabled")
+    })
+    @GetMapping("/search")
+    public ResponseEntity<List<FileMetadata>> search(
+            @Parameter(description = "Only paths starting with this string (e.g., logs/2024-); end it with '/' to stay inside a directory, as 'docs' also matches 'docs2/'")
+            @RequestParam(required = false) String prefix,
+            @Parameter(description = "Glob filter; without a '/' it matches entry names (e.g., *.txt), with one it matches paths from the root (e.g., logs/*/*.log)")
+            @RequestParam(required = false) String filter,
+            @Parameter(description = "Comma-separated file extensions to include (e.g., txt,java)")
+            @RequestParam(required = false) Set<String> extensions,
+            @Parameter(description = "Minimum size in bytes")
+            @RequestParam(required = false) Long minSize,
+            @Parameter(description = "Maximum size in bytes")
+            @RequestParam(required = false) Long maxSize,
+            @Parameter(description = "Only entries modified at or after this ISO-8601 instant")
+            @RequestParam(required = false) String modifiedAfter,
+            @Parameter(description = "Only entries modified before this ISO-8601 instant")
+            @RequestParam(required = false) String modifiedBefore,
+            @Parameter(description = "Entry type to include: all, files or directories")
+            @RequestParam(required = false) String type,
+            @Parameter(description = "Maximum number of entries to return")
+            @RequestParam(required = false) Integer limit) {
+        if (prefix != null && (prefix.startsWith("/") || prefix.contains(".."))) {
+            throw new IllegalArgumentException("Invalid prefix: absolute paths and path traversal not allowed");
         }
-        return fileSystem.list(path, filterPredicate);
+        int maxEntries = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        if (maxEntries < 1 || maxEntries > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Invalid limit: must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        MetadataIndex index = metadataIndex.getIfAvailable();
+        if (index == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        FileQuery query = buildQuery("", filter, extensions, minSize, maxSize, modifiedAfter, modifiedBefore, type, null);
+        return ResponseEntity.ok(index.search(prefix, query, maxEntries));
     }
 
     @Operation(summary = "Delete a file or directory")
@@ -170,6 +573,24 @@ public class FileSystemController {
         return fileSystem.move(sourcePath, destinationPath);
     }
 
+    @Operation(summary = "Copy a file inside the backend")
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "File copied successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid source or destination path"),
+        @ApiResponse(responseCode = "404", description = "Source path not found"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PostMapping("/copy")
+    public FileMetadata copy(
+            @Parameter(description = "Path of the file to copy")
+            @RequestParam String sourcePath,
+            @Parameter(description = "Path of the copy; an existing file there is replaced")
+            @RequestParam String destinationPath) {
+        validatePath(sourcePath);
+        validatePath(destinationPath);
+        return fileSystem.copy(sourcePath, destinationPath);
+    }
+
     @Operation(summary = "Rename a file or directory")
     @ApiResponses({
         @ApiResponse(responseCode = "200", description = "File or directory renamed successfully"),
@@ -187,6 +608,60 @@ public class FileSystemController {
         return fileSystem.rename(path, newName);
     }
 
+    private void validateBatchOperation(BatchOperation operation) {
+        if (operation.getOp() == null) {
+            throw new IllegalArgumentException("Invalid operation: op must be one of create, mkdir, move, copy, rename, delete, getMetadata");
+        }
+        validatePath(operation.getPath());
+        switch (operation.getOp()) {
+            case MOVE, COPY -> validatePath(operation.getDestination());
+            case RENAME -> validateNewName(operation.getNewName());
+            default -> { }
+        }
+    }
+
+    @Operation(summary = "Run a batch of operations and stream their results as newline-delimited JSON")
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "One result per operation streamed in request order, each with its own status"),
+        @ApiResponse(responseCode = "400", description = "Invalid request body or concurrency"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PostMapping(value = "/batch",
+                 consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+                 produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> batch(
+            @Parameter(description = "Maximum number of operations running at once; operations on the same or nested paths still run in request order")
+            @RequestParam(required = false) Integer concurrency,
+            @Parameter(description = "Current HTTP request carrying the operations as a JSON array or newline-delimited JSON", hidden = true)
+            HttpServletRequest request) throws IOException {
+        int maxConcurrent = concurrency != null ? concurrency : DEFAULT_BATCH_CONCURRENCY;
+        if (maxConcurrent < 1 || maxConcurrent > MAX_BATCH_CONCURRENCY) {
+            throw new IllegalArgumentException("Invalid concurrency: must be between 1 and " + MAX_BATCH_CONCURRENCY);
+        }
+        // Operations are read one at a time as they run; opening the reader here still maps an unreadable body to 400
+        MappingIterator<BatchOperation> operations;
+        try {
+            operations = objectMapper.readerFor(BatchOperation.class)
+                .with(DeserializationFeature.READ_UNKNOWN_ENUM_VALUES_AS_NULL)
+                .readValues(request.getInputStream());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid request body: " + e.getOriginalMessage());
+        }
+        BatchOperationRunner runner = new BatchOperationRunner(fileSystem, objectMapper, this::validateBatchOperation, maxConcurrent);
+        StreamingResponseBody body = outputStream -> {
+            try (operations) {
+                runner.run(operations, outputStream);
+            } catch (RuntimeException e) {
+                // The status line has already been sent, so all that is left is to cut the stream short
+                log.error("Failed to run batch: {}", e.getMessage(), e);
+                throw e;
+            }
+        };
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(body);
+    }
+
     @Operation(summary = "Check system health")
     @ApiResponses({
         @ApiResponse(responseCode = "200", description = "System is healthy"),
@@ -200,6 +675,13 @@ public class FileSystemController {
                 .body(isHealthy ? "Healthy" : "Unhealthy");
     }
 
+    @ExceptionHandler(PathNotFoundException.class)
+    public ResponseEntity<String> handlePathNotFoundException(PathNotFoundException e) {
+        return ResponseEntity
+                .status(HttpStatus.NOT_FOUND)
+                .body("Error: " + e.getMessage());
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<String> handleIllegalArgumentException(IllegalArgumentException e) {
         return ResponseEntity
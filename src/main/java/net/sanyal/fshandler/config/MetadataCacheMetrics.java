@@ -0,0 +1,52 @@
+package net.sanyal.fshandler.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import net.sanyal.fshandler.core.FileSystem;
+import net.sanyal.fshandler.core.cache.CachingFileSystem;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the metadata cache counters through Actuator, using Micrometer's standard cache meter
+ * names ({@code cache.gets}, {@code cache.evictions}, {@code cache.size}) tagged with
+ * {@code cache=filesystem-metadata}.
+ */
+@Component
+@ConditionalOnProperty(name = "filesystem.metadata-cache.enabled", havingValue = "true")
+public class MetadataCacheMetrics implements MeterBinder {
+    private static final String CACHE_NAME = "filesystem-metadata";
+
+    private final FileSystem fileSystem;
+
+    public MetadataCacheMetrics(FileSystem fileSystem) {
+        this.fileSystem = fileSystem;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!(fileSystem instanceof CachingFileSystem cache)) {
+            return;
+        }
+        FunctionCounter.builder("cache.gets", cache, CachingFileSystem::getHitCount)
+            .tag("cache", CACHE_NAME)
+            .tag("result", "hit")
+            .description("Metadata lookups served from the cache")
+            .register(registry);
+        FunctionCounter.builder("cache.gets", cache, CachingFileSystem::getMissCount)
+            .tag("cache", CACHE_NAME)
+            .tag("result", "miss")
+            .description("Metadata lookups that went to the backend")
+            .register(registry);
+        FunctionCounter.builder("cache.evictions", cache, CachingFileSystem::getEvictionCount)
+            .tag("cache", CACHE_NAME)
+            .description("Entries evicted because the cache was full")
+            .register(registry);
+        Gauge.builder("cache.size", cache, CachingFileSystem::size)
+            .tag("cache", CACHE_NAME)
+            .description("Number of cached paths")
+            .register(registry);
+    }
+}
@@ -0,0 +1,80 @@
+package net.sanyal.fshandler.core;
+
+import net.sanyal.fshandler.core.model.FileMetadata;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+/**
+ * Non-blocking companion of {@link FileSystem}. Every operation returns immediately and completes
+ * its future once the backend has answered, so callers do not hold a thread while waiting on I/O.
+ * <p>
+ * The service itself does not expose it as a bean: an instance talks to its backend directly, past
+ * the metadata cache and index that wrap the {@link FileSystem} bean, so changes made through it
+ * would leave both stale. Embedding applications that use neither can build one for their backend.
+ */
+public interface AsyncFileSystem {
+    /**
+     * Creates a new file at the specified path
+     * @param path Path where the file should be created
+     * @return Future completed with the FileMetadata of the created file
+     */
+    CompletableFuture<FileMetadata> createFile(String path);
+
+    /**
+     * Creates a new directory at the specified path
+     * @param path Path where the directory should be created
+     * @return Future completed with the FileMetadata of the created directory
+     */
+    CompletableFuture<FileMetadata> createDirectory(String path);
+
+    /**
+     * Reads a byte range of the file content
+     * @param path Path to the file
+     * @param offset Position of the first byte to read
+     * @param length Maximum number of bytes to read; fewer are returned at the end of the file
+     * @return Future completed with a buffer holding the bytes read, ready to be consumed
+     */
+    CompletableFuture<ByteBuffer> readFile(String path, long offset, int length);
+
+    /**
+     * Replaces the file content
+     * @param path Path to the file
+     * @param content Bytes between the buffer's position and limit are written
+     * @return Future completed with the FileMetadata of the written file
+     */
+    CompletableFuture<FileMetadata> writeFile(String path, ByteBuffer content);
+
+    /**
+     * Moves a file or directory from source to destination
+     * @param sourcePath Source path
+     * @param destinationPath Destination path
+     * @return Future completed with the FileMetadata of the moved file/directory
+     */
+    CompletableFuture<FileMetadata> move(String sourcePath, String destinationPath);
+
+    /**
+     * Deletes a file or directory
+     * @param path Path to delete
+     * @return Future completed once the path is deleted, or failed with a {@link PartialDeleteException}
+     *         if some paths below a directory could not be deleted
+     */
+    CompletableFuture<Void> delete(String path);
+
+    /**
+     * Lists contents of a directory
+     * @param path Directory path
+     * @param filter Optional filter predicate
+     * @return Future completed with the FileMetadata of the directory contents
+     */
+    CompletableFuture<List<FileMetadata>> list(String path, Predicate<FileMetadata> filter);
+
+    /**
+     * Gets metadata for a file or directory
+     * @param path Path to the file or directory
+     * @return Future completed with the FileMetadata
+     */
+    CompletableFuture<FileMetadata> getMetadata(String path);
+}
@@ -0,0 +1,90 @@
+package net.sanyal.fshandler.core;
+
+import net.sanyal.fshandler.core.model.FileMetadata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Predicate;
+
+/**
+ * Exposes a blocking {@link FileSystem} as an {@link AsyncFileSystem} by running each call on an
+ * executor. Backends without a native non-blocking client use this, and the wrapped file system
+ * stays available to existing synchronous callers.
+ */
+public class AsyncFileSystemAdapter implements AsyncFileSystem, AutoCloseable {
+    protected final FileSystem fileSystem;
+    protected final ExecutorService executor;
+
+    public AsyncFileSystemAdapter(FileSystem fileSystem, ExecutorService executor) {
+        if (fileSystem == null || executor == null) {
+            throw new IllegalArgumentException("File system and executor must not be null");
+        }
+        this.fileSystem = fileSystem;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<FileMetadata> createFile(String path) {
+        return CompletableFuture.supplyAsync(() -> fileSystem.createFile(path), executor);
+    }
+
+    @Override
+    public CompletableFuture<FileMetadata> createDirectory(String path) {
+        return CompletableFuture.supplyAsync(() -> fileSystem.createDirectory(path), executor);
+    }
+
+    @Override
+    public CompletableFuture<ByteBuffer> readFile(String path, long offset, int length) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (InputStream is = fileSystem.readFile(path, offset, length)) {
+                return ByteBuffer.wrap(is.readNBytes(length));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read file: " + e.getMessage(), e);
+            }
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<FileMetadata> writeFile(String path, ByteBuffer content) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (OutputStream os = fileSystem.writeFile(path, content.remaining())) {
+                Channels.newChannel(os).write(content);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write to file: " + e.getMessage(), e);
+            }
+            return fileSystem.getMetadata(path);
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<FileMetadata> move(String sourcePath, String destinationPath) {
+        return CompletableFuture.supplyAsync(() -> fileSystem.move(sourcePath, destinationPath), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(String path) {
+        return CompletableFuture.runAsync(() -> fileSystem.delete(path), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<FileMetadata>> list(String path, Predicate<FileMetadata> filter) {
+        return CompletableFuture.supplyAsync(() -> fileSystem.list(path, filter), executor);
+    }
+
+    @Override
+    public CompletableFuture<FileMetadata> getMetadata(String path) {
+        return CompletableFuture.supplyAsync(() -> fileSystem.getMetadata(path), executor);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
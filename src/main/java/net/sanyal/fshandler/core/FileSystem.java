@@ -1,11 +1,16 @@
 package net.sanyal.fshandler.core;
 
+import net.sanyal.fshandler.core.model.FileListPage;
 import net.sanyal.fshandler.core.model.FileMetadata;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public interface FileSystem {
     /**
@@ -26,16 +31,46 @@ public interface FileSystem {
      * Gets an input stream to read the file content
      * @param path Path to the file
      * @return InputStream for reading the file
+     * @throws PathNotFoundException if the file does not exist
      */
     InputStream readFile(String path);
 
     /**
-     * Gets an output stream to write to the file
+     * Gets an input stream to read a byte range of the file content
+     * @param path Path to the file
+     * @param offset Position of the first byte to read
+     * @param length Maximum number of bytes to read; the stream ends early at the end of the file
+     * @return InputStream for reading the requested range
+     * @throws PathNotFoundException if the file does not exist
+     */
+    InputStream readFile(String path, long offset, long length);
+
+    /**
+     * Resolves a file to its location on the local disk, for backends that keep files locally.
+     * Callers can use the returned path for zero-copy transfers instead of {@link #readFile(String)}.
+     * @param path Path to the file
+     * @return Local path of the regular file, or empty if the backend is not local or the file does not exist
+     */
+    Optional<Path> getLocalPath(String path);
+
+    /**
+     * Gets an output stream to write to the file. The file is replaced when the stream is closed;
+     * streams implementing {@link net.sanyal.fshandler.core.io.Abortable} can instead be aborted to
+     * keep the previous content.
      * @param path Path to the file
      * @return OutputStream for writing to the file
      */
     OutputStream writeFile(String path);
 
+    /**
+     * Gets an output stream to write to the file when the number of bytes to be written is known up front.
+     * As with {@link #writeFile(String)}, the file is replaced on close and kept if the stream is aborted.
+     * @param path Path to the file
+     * @param expectedSize Expected number of bytes, or -1 if unknown; used to size buffers and upload parts
+     * @return OutputStream for writing to the file
+     */
+    OutputStream writeFile(String path, long expectedSize);
+
     /**
      * Gets an output stream to append to the file
      * @param path Path to the file
@@ -59,12 +94,28 @@ public interface FileSystem {
      */
     FileMetadata rename(String path, String newName);
 
+    /**
+     * Copies a file inside the backend, without its content passing through the caller
+     * @param sourcePath Path of the file to copy
+     * @param destinationPath Path of the copy; an existing file there is replaced
+     * @return FileMetadata of the copy
+     * @throws PathNotFoundException if nothing exists at the source path
+     */
+    FileMetadata copy(String sourcePath, String destinationPath);
+
     /**
      * Deletes a file or directory
      * @param path Path to delete
      */
     void delete(String path);
 
+    /**
+     * Deletes several files or directories, grouping them into as few backend requests as it can
+     * @param paths Paths to delete, each as accepted by {@link #delete(String)}
+     * @return The paths that could not be deleted, mapped to the reason; empty when all were deleted
+     */
+    Map<String, RuntimeException> deleteAll(List<String> paths);
+
     /**
      * Lists contents of a directory
      * @param path Directory path
@@ -81,10 +132,34 @@ public interface FileSystem {
      */
     List<FileMetadata> listRecursive(String path, Predicate<FileMetadata> filter);
 
+    /**
+     * Lists one page of a directory's contents in a stable order, so that huge directories can be
+     * walked with bounded memory
+     * @param path Directory path
+     * @param recursive Whether nested contents are included
+     * @param filter Optional filter predicate
+     * @param cursor Opaque cursor returned with the previous page, or null for the first page
+     * @param limit Maximum number of entries in the page
+     * @return FileListPage with the entries and the cursor of the next page
+     */
+    FileListPage listPage(String path, boolean recursive, Predicate<FileMetadata> filter, String cursor, int limit);
+
+    /**
+     * Lazily lists contents of a directory, discovering entries as the stream is consumed so that
+     * arbitrarily large trees can be processed with constant memory. The stream holds open
+     * resources and must be closed by the caller.
+     * @param path Directory path
+     * @param recursive Whether nested contents are included
+     * @param filter Optional filter predicate
+     * @return Stream of FileMetadata for directory contents
+     */
+    Stream<FileMetadata> listStream(String path, boolean recursive, Predicate<FileMetadata> filter);
+
     /**
      * Gets metadata for a file or directory
      * @param path Path to the file or directory
      * @return FileMetadata
+     * @throws PathNotFoundException if nothing exists at the path
      */
     FileMetadata getMetadata(String path);
 
@@ -0,0 +1,36 @@
+package net.sanyal.fshandler.core;
+
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Thrown when a recursive delete removed only part of a tree. Carries every path that could not be
+ * deleted along with the reason, so callers can retry or report exactly those.
+ */
+@Getter
+public class PartialDeleteException extends RuntimeException {
+    private static final int MAX_PATHS_IN_MESSAGE = 10;
+
+    private final String path;
+    private final long deletedCount;
+    /** Paths that were not deleted, mapped to the reason */
+    private final Map<String, String> failures;
+
+    public PartialDeleteException(String path, long deletedCount, Map<String, String> failures) {
+        super(message(path, deletedCount, failures));
+        this.path = path;
+        this.deletedCount = deletedCount;
+        this.failures = Map.copyOf(failures);
+    }
+
+    private static String message(String path, long deletedCount, Map<String, String> failures) {
+        String examples = failures.entrySet().stream()
+            .limit(MAX_PATHS_IN_MESSAGE)
+            .map(failure -> failure.getKey() + " (" + failure.getValue() + ")")
+            .collect(Collectors.joining(", "));
+        return "Failed to delete " + failures.size() + " paths below '" + path + "' after deleting "
+            + deletedCount + ": " + examples + (failures.size() > MAX_PATHS_IN_MESSAGE ? ", ..." : "");
+    }
+}
@@ -0,0 +1,38 @@
+package net.sanyal.fshandler.core;
+
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Thrown when moving a directory moved only part of it. Every path that was not moved is still at
+ * its source, so running the same move again picks up exactly those.
+ */
+@Getter
+public class PartialMoveException extends RuntimeException {
+    private static final int MAX_PATHS_IN_MESSAGE = 10;
+
+    private final String sourcePath;
+    private final String destinationPath;
+    private final long movedCount;
+    /** Source paths that were not moved, mapped to the reason */
+    private final Map<String, String> failures;
+
+    public PartialMoveException(String sourcePath, String destinationPath, long movedCount, Map<String, String> failures) {
+        super(message(sourcePath, destinationPath, movedCount, failures));
+        this.sourcePath = sourcePath;
+        this.destinationPath = destinationPath;
+        this.movedCount = movedCount;
+        this.failures = Map.copyOf(failures);
+    }
+
+    private static String message(String sourcePath, String destinationPath, long movedCount, Map<String, String> failures) {
+        String examples = failures.entrySet().stream()
+            .limit(MAX_PATHS_IN_MESSAGE)
+            .map(failure -> failure.getKey() + " (" + failure.getValue() + ")")
+            .collect(Collectors.joining(", "));
+        return "Failed to move " + failures.size() + " paths from '" + sourcePath + "' to '" + destinationPath
+            + "' after moving " + movedCount + ": " + examples + (failures.size() > MAX_PATHS_IN_MESSAGE ? ", ..." : "");
+    }
+}
@@ -0,0 +1,22 @@
+package net.sanyal.fshandler.core;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a path does not exist in the file system. Probing for files that do not exist yet is
+ * an expected outcome rather than a failure, so backends log it quietly and the API answers 404.
+ */
+@Getter
+public class PathNotFoundException extends RuntimeException {
+    private final String path;
+
+    public PathNotFoundException(String path) {
+        super("Path not found: " + path);
+        this.path = path;
+    }
+
+    public PathNotFoundException(String path, Throwable cause) {
+        super("Path not found: " + path, cause);
+        this.path = path;
+    }
+}
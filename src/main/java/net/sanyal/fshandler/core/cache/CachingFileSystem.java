@@ -0,0 +1,441 @@
+package net.sanyal.fshandler.core.cache;
+
+import net.sanyal.fshandler.core.FileSystem;
+import net.sanyal.fshandler.core.PathNotFoundException;
+import net.sanyal.fshandler.core.config.MetadataCacheConfig;
+import net.sanyal.fshandler.core.io.Abortable;
+import net.sanyal.fshandler.core.model.FileListPage;
+import net.sanyal.fshandler.core.model.FileMetadata;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Decorates a {@link FileSystem} with a bounded, TTL-based cache of {@link #getMetadata} results
+ * keyed by path.
+ * <p>
+ * Paths the backend reported missing are remembered for a shorter time, during which lookups and
+ * reads fail with {@link PathNotFoundException} without a round trip. Creating or writing a path
+ * forgets that it, or any directory above it, was missing.
+ * <p>
+ * Mutations made through this decorator invalidate the affected paths, including everything below
+ * a moved, renamed or deleted directory. Written files are invalidated again when their stream is
+ * closed, since that is when the new content becomes visible. Changes made behind its back are
+ * picked up once the entry expires.
+ */
+public class CachingFileSystem implements FileSystem, AutoCloseable {
+    private final FileSystem delegate;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final LongSupplier nanoClock;
+    // A lock rather than synchronized, so virtual threads do not pin their carrier while waiting
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, CachedMetadata> cache;
+    // Bumped by every invalidation, so a load that raced with a mutation is not cached
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CachingFileSystem(FileSystem delegate, MetadataCacheConfig config) {
+        this(delegate, config, System::nanoTime);
+    }
+
+    CachingFileSystem(FileSystem delegate, MetadataCacheConfig config, LongSupplier nanoClock) {
+        if (delegate == null || config == null) {
+            throw new IllegalArgumentException("Delegate file system and cache config must not be null");
+        }
+        if (config.getMaxEntries() < 1 || config.getTtlMillis() < 1) {
+            throw new IllegalArgumentException("Cache size and TTL must be positive");
+        }
+        if (config.getNegativeTtlMillis() < 0) {
+            throw new IllegalArgumentException("Negative lookup TTL must not be negative");
+        }
+        this.delegate = delegate;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(config.getTtlMillis());
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(config.getNegativeTtlMillis());
+        this.nanoClock = nanoClock;
+        int maxEntries = config.getMaxEntries();
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedMetadata> eldest) {
+                if (size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public FileSystem getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public FileMetadata getMetadata(String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path must not be null when getting metadata");
+        }
+        long now = nanoClock.getAsLong();
+        long loadGeneration;
+        lock.lock();
+        try {
+            loadGeneration = generation;
+            CachedMetadata cached = lookup(path, now);
+            if (cached != null) {
+                hits.increment();
+                if (cached.metadata() == null) {
+                    throw new PathNotFoundException(path);
+                }
+                return cached.metadata();
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+        // Loaded outside the lock so one slow round trip does not stall every other lookup
+        FileMetadata metadata;
+        try {
+            metadata = delegate.getMetadata(path);
+        } catch (PathNotFoundException e) {
+            recordMissing(path, now, loadGeneration);
+            throw e;
+        }
+        lock.lock();
+        try {
+            if (generation == loadGeneration) {
+                cache.put(path, new CachedMetadata(metadata, now + ttlNanos));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return metadata;
+    }
+
+    /** Returns the live entry for a path, dropping it if it has expired; callers hold the lock */
+    private CachedMetadata lookup(String path, long now) {
+        CachedMetadata cached = cache.get(path);
+        if (cached != null && now - cached.expiresAtNanos() >= 0) {
+            cache.remove(path);
+            return null;
+        }
+        return cached;
+    }
+
+    /** Remembers that a path is missing, unless it has been mutated since the lookup started */
+    private void recordMissing(String path, long now, long loadGeneration) {
+        if (negativeTtlNanos == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (generation == loadGeneration) {
+                cache.put(path, new CachedMetadata(null, now + negativeTtlNanos));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Fails fast for a path recently found missing, returning the generation to load under otherwise */
+    private long checkNotMissing(String path, long now) {
+        lock.lock();
+        try {
+            CachedMetadata cached = lookup(path, now);
+            if (cached != null && cached.metadata() == null) {
+                hits.increment();
+                throw new PathNotFoundException(path);
+            }
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public FileMetadata createFile(String path) {
+        try {
+            return delegate.createFile(path);
+        } finally {
+            invalidate(path);
+        }
+    }
+
+    @Override
+    public FileMetadata createDirectory(String path) {
+        try {
+            return delegate.createDirectory(path);
+        } finally {
+            invalidate(path);
+        }
+    }
+
+    @Override
+    public InputStream readFile(String path) {
+        if (path == null) {
+            return delegate.readFile(path);
+        }
+        long now = nanoClock.getAsLong();
+        long loadGeneration = checkNotMissing(path, now);
+        try {
+            return delegate.readFile(path);
+        } catch (PathNotFoundException e) {
+            recordMissing(path, now, loadGeneration);
+            throw e;
+        }
+    }
+
+    @Override
+    public InputStream readFile(String path, long offset, long length) {
+        if (path == null) {
+            return delegate.readFile(path, offset, length);
+        }
+        long now = nanoClock.getAsLong();
+        long loadGeneration = checkNotMissing(path, now);
+        try {
+            return delegate.readFile(path, offset, length);
+        } catch (PathNotFoundException e) {
+            recordMissing(path, now, loadGeneration);
+            throw e;
+        }
+    }
+
+    @Override
+    public Optional<Path> getLocalPath(String path) {
+        return delegate.getLocalPath(path);
+    }
+
+    @Override
+    public OutputStream writeFile(String path) {
+        invalidate(path);
+        return new InvalidatingOutputStream(delegate.writeFile(path), path);
+    }
+
+    @Override
+    public OutputStream writeFile(String path, long expectedSize) {
+        invalidate(path);
+        return new InvalidatingOutputStream(delegate.writeFile(path, expectedSize), path);
+    }
+
+    @Override
+    public OutputStream appendFile(String path) {
+        invalidate(path);
+        return new InvalidatingOutputStream(delegate.appendFile(path), path);
+    }
+
+    @Override
+    public FileMetadata move(String sourcePath, String destinationPath) {
+        try {
+            return delegate.move(sourcePath, destinationPath);
+        } finally {
+            invalidateTree(sourcePath);
+            invalidateTree(destinationPath);
+        }
+    }
+
+    @Override
+    public FileMetadata rename(String path, String newName) {
+        try {
+            return delegate.rename(path, newName);
+        } finally {
+            invalidateTree(path);
+            if (path != null && newName != null) {
+                int slash = path.lastIndexOf('/');
+                invalidateTree(slash < 0 ? newName : path.substring(0, slash + 1) + newName);
+            }
+        }
+    }
+
+    @Override
+    public FileMetadata copy(String sourcePath, String destinationPath) {
+        try {
+            return delegate.copy(sourcePath, destinationPath);
+        } finally {
+            invalidate(destinationPath);
+        }
+    }
+
+    @Override
+    public void delete(String path) {
+        try {
+            delegate.delete(path);
+        } finally {
+            invalidateTree(path);
+        }
+    }
+
+    @Override
+    public Map<String, RuntimeException> deleteAll(List<String> paths) {
+        try {
+            return delegate.deleteAll(paths);
+        } finally {
+            if (paths != null) {
+                paths.forEach(this::invalidateTree);
+            }
+        }
+    }
+
+    @Override
+    public List<FileMetadata> list(String path, Predicate<FileMetadata> filter) {
+        return delegate.list(path, filter);
+    }
+
+    @Override
+    public List<FileMetadata> listRecursive(String path, Predicate<FileMetadata> filter) {
+        return delegate.listRecursive(path, filter);
+    }
+
+    @Override
+    public Stream<FileMetadata> listStream(String path, boolean recursive, Predicate<FileMetadata> filter) {
+        return delegate.listStream(path, recursive, filter);
+    }
+
+    @Override
+    public FileListPage listPage(String path, boolean recursive, Predicate<FileMetadata> filter, String cursor, int limit) {
+        return delegate.listPage(path, recursive, filter, cursor, limit);
+    }
+
+    @Override
+    public boolean isHealthy() {
+        return delegate.isHealthy();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return cache.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Drops every cached entry */
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            generation++;
+            cache.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void invalidate(String path) {
+        if (path == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            generation++;
+            cache.remove(path);
+            forgetMissingAncestors(path);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Invalidates a path and, in case it is a directory, every path below it */
+    private void invalidateTree(String path) {
+        if (path == null) {
+            return;
+        }
+        String directory = path.endsWith("/") ? path : path + "/";
+        String key = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        lock.lock();
+        try {
+            generation++;
+            cache.remove(path);
+            cache.remove(key);
+            cache.keySet().removeIf(cached -> cached.startsWith(directory));
+            forgetMissingAncestors(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Drops the directories above a path that were found missing, since it now exists; callers hold the lock */
+    private void forgetMissingAncestors(String path) {
+        for (int slash = path.lastIndexOf('/'); slash > 0; slash = path.lastIndexOf('/', slash - 1)) {
+            String ancestor = path.substring(0, slash);
+            CachedMetadata cached = cache.get(ancestor);
+            if (cached != null && cached.metadata() == null) {
+                cache.remove(ancestor);
+            }
+            // S3 directory markers are looked up with a trailing slash
+            cached = cache.get(ancestor + "/");
+            if (cached != null && cached.metadata() == null) {
+                cache.remove(ancestor + "/");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (delegate instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    /** A cached lookup; null metadata records that the path was missing */
+    private record CachedMetadata(FileMetadata metadata, long expiresAtNanos) {
+    }
+
+    /** Invalidates the written path once more when the new content becomes visible on close */
+    private final class InvalidatingOutputStream extends FilterOutputStream implements Abortable {
+        private final String path;
+
+        InvalidatingOutputStream(OutputStream out, String path) {
+            super(out);
+            this.path = path;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                invalidate(path);
+            }
+        }
+        @Override
+        public void abort() throws IOException {
+            try {
+                Abortable.abort(out);
+            } finally {
+                invalidate(path);
+            }
+        }
+    }
+}
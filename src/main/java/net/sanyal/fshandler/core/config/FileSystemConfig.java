@@ -1,5 +1,6 @@
 package net.sanyal.fshandler.core.config;
 
+import lombok.Builder;
 import lombok.Getter;
 import lombok.experimental.SuperBuilder;
 
@@ -8,6 +9,10 @@ import lombok.experimental.SuperBuilder;
 public abstract class FileSystemConfig {
     private final int maxConnections;
     private final long timeoutMillis;
+
+    /** Run backend I/O tasks on virtual threads instead of a platform thread pool */
+    @Builder.Default
+    private final boolean virtualThreads = false;
     
     public abstract String getType();
 }
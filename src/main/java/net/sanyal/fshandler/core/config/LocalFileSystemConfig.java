@@ -1,5 +1,6 @@
 package net.sanyal.fshandler.core.config;
 
+import lombok.Builder;
 import lombok.Getter;
 import lombok.experimental.SuperBuilder;
 
@@ -8,6 +9,28 @@ import lombok.experimental.SuperBuilder;
 public class LocalFileSystemConfig extends FileSystemConfig {
     private final String basePath;
 
+    /** Number of threads walking subdirectories concurrently in listRecursive; 1 keeps the sequential walker */
+    @Builder.Default
+    private final int listParallelism = 1;
+
+    /**
+     * Return parallel recursive listings in pre-order with siblings sorted by name. When disabled,
+     * each directory's entries are followed by its subtrees in the order the file system reports them.
+     */
+    @Builder.Default
+    private final boolean deterministicListOrder = true;
+
+    /**
+     * Number of directories whose listings are cached and kept current through a watch service;
+     * the least recently listed directory is dropped beyond that. 0 disables the cache.
+     */
+    @Builder.Default
+    private final int listCacheMaxDirectories = 0;
+
+    /** Number of threads deleting subdirectories concurrently when a directory is deleted; 1 deletes sequentially */
+    @Builder.Default
+    private final int deleteParallelism = 1;
+
     @Override
     public String getType() {
         return "local";
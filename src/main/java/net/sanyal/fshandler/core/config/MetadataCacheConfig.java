@@ -0,0 +1,23 @@
+package net.sanyal.fshandler.core.config;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class MetadataCacheConfig {
+    /** Maximum number of cached paths; the least recently used entry is evicted beyond it */
+    @Builder.Default
+    private final int maxEntries = 10_000;
+
+    /** How long a cached entry is served, which also bounds staleness after out-of-band changes */
+    @Builder.Default
+    private final long ttlMillis = 5_000;
+
+    /**
+     * How long a path found missing is answered as not found without asking the backend; kept short
+     * because files often appear right after clients start probing for them. 0 disables it.
+     */
+    @Builder.Default
+    private final long negativeTtlMillis = 1_000;
+}
@@ -0,0 +1,25 @@
+package net.sanyal.fshandler.core.config;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class MetadataIndexConfig {
+    /** Directory holding the index snapshot and journals */
+    private final String directory;
+
+    /**
+     * Time between background full scans, which pick up changes made behind the service's back.
+     * 0 disables the periodic scans; an index that starts out empty is still scanned once.
+     */
+    @Builder.Default
+    private final long rebuildIntervalMillis = 3_600_000;
+
+    /**
+     * Most paths the index holds. Entries live on the heap, and a rebuild briefly holds two copies,
+     * so the heap must fit twice this many. A scan that finds more paths leaves the index as it was.
+     */
+    @Builder.Default
+    private final long maxEntries = 1_000_000;
+}
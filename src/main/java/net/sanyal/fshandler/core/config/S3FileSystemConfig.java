@@ -1,16 +1,52 @@
 package net.sanyal.fshandler.core.config;
 
+import lombok.Builder;
 import lombok.Getter;
 import lombok.experimental.SuperBuilder;
 
 @Getter
 @SuperBuilder
 public class S3FileSystemConfig extends FileSystemConfig {
+    /** Smallest part size S3 accepts for every part except the last one */
+    public static final int MIN_PART_SIZE_BYTES = 5 * 1024 * 1024;
+
     private final String bucketName;
     private final String region;
     private final String accessKey;
     private final String secretKey;
 
+    /** Size of each part of a multipart upload */
+    @Builder.Default
+    private final int partSizeBytes = 8 * 1024 * 1024;
+
+    /** Number of parts of a single upload that may be in flight at once */
+    @Builder.Default
+    private final int maxInFlightParts = 4;
+
+    /** Size of each byte range fetched when reading large objects */
+    @Builder.Default
+    private final int readPartSizeBytes = 8 * 1024 * 1024;
+
+    /** Number of byte ranges of a single read that are fetched concurrently; 1 disables prefetching */
+    @Builder.Default
+    private final int readParallelism = 4;
+
+    /** Number of DeleteObjects requests, of up to 1000 keys each, in flight while deleting a prefix */
+    @Builder.Default
+    private final int deleteParallelism = 4;
+
+    /** Size of each byte range copied by UploadPartCopy when an object is too large for CopyObject */
+    @Builder.Default
+    private final long copyPartSizeBytes = 512L * 1024 * 1024;
+
+    /** Number of UploadPartCopy requests of a single copy in flight at once */
+    @Builder.Default
+    private final int copyParallelism = 8;
+
+    /** Number of objects copied concurrently while moving a directory */
+    @Builder.Default
+    private final int moveParallelism = 16;
+
     @Override
     public String getType() {
         return "s3";
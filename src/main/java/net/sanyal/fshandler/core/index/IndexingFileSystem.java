@@ -0,0 +1,288 @@
+package net.sanyal.fshandler.core.index;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sanyal.fshandler.core.FileSystem;
+import net.sanyal.fshandler.core.config.MetadataIndexConfig;
+import net.sanyal.fshandler.core.io.Abortable;
+import net.sanyal.fshandler.core.model.FileListPage;
+import net.sanyal.fshandler.core.model.FileMetadata;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Decorates a {@link FileSystem} so that every mutation made through it is mirrored into a
+ * {@link MetadataIndex}, and rebuilds the index from a full scan of the delegate in the background.
+ * <p>
+ * Failing to update the index never fails the mutation itself, it is logged and left to the next
+ * scan. Directories created implicitly by a write also only appear after the next scan.
+ */
+@Slf4j
+public class IndexingFileSystem implements FileSystem, AutoCloseable {
+    private final FileSystem delegate;
+    private final MetadataIndex index;
+    private final ScheduledExecutorService rebuildScheduler;
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    public IndexingFileSystem(FileSystem delegate, MetadataIndex index, MetadataIndexConfig config) {
+        if (delegate == null || index == null || config == null) {
+            throw new IllegalArgumentException("Delegate file system, index and index config must not be null");
+        }
+        if (config.getRebuildIntervalMillis() < 0) {
+            throw new IllegalArgumentException("Rebuild interval must not be negative");
+        }
+        this.delegate = delegate;
+        this.index = index;
+        this.rebuildScheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("metadata-index-rebuild").daemon(true).factory());
+        long interval = config.getRebuildIntervalMillis();
+        long initialDelay = index.isLoadedFromDisk() ? interval : 0;
+        if (interval > 0) {
+            rebuildScheduler.scheduleWithFixedDelay(this::rebuildQuietly, initialDelay, interval, TimeUnit.MILLISECONDS);
+        } else if (!index.isLoadedFromDisk()) {
+            rebuildScheduler.execute(this::rebuildQuietly);
+        }
+    }
+
+    public FileSystem getDelegate() {
+        return delegate;
+    }
+
+    public MetadataIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Replaces the index with a full recursive scan of the delegate. Returns false without scanning
+     * when another rebuild is already running.
+     */
+    public boolean rebuild() {
+        if (!rebuildLock.tryLock()) {
+            return false;
+        }
+        try {
+            long start = System.nanoTime();
+            index.startRebuild();
+            try (Stream<FileMetadata> scanned = delegate.listStream("", true, null)) {
+                index.finishRebuild(scanned);
+            } catch (RuntimeException e) {
+                index.abortRebuild();
+                throw e;
+            }
+            log.info("Rebuilt metadata index with {} entries in {} ms",
+                index.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return true;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            // Keeps the schedule alive; the next run tries again
+            log.error("Failed to rebuild metadata index: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public FileMetadata createFile(String path) {
+        FileMetadata metadata = delegate.createFile(path);
+        index(metadata);
+        return metadata;
+    }
+
+    @Override
+    public FileMetadata createDirectory(String path) {
+        FileMetadata metadata = delegate.createDirectory(path);
+        index(metadata);
+        return metadata;
+    }
+
+    @Override
+    public InputStream readFile(String path) {
+        return delegate.readFile(path);
+    }
+
+    @Override
+    public InputStream readFile(String path, long offset, long length) {
+        return delegate.readFile(path, offset, length);
+    }
+
+    @Override
+    public Optional<Path> getLocalPath(String path) {
+        return delegate.getLocalPath(path);
+    }
+
+    @Override
+    public OutputStream writeFile(String path) {
+        return new IndexingOutputStream(delegate.writeFile(path), path);
+    }
+
+    @Override
+    public OutputStream writeFile(String path, long expectedSize) {
+        return new IndexingOutputStream(delegate.writeFile(path, expectedSize), path);
+    }
+
+    @Override
+    public OutputStream appendFile(String path) {
+        return new IndexingOutputStream(delegate.appendFile(path), path);
+    }
+
+    @Override
+    public FileMetadata move(String sourcePath, String destinationPath) {
+        FileMetadata metadata = delegate.move(sourcePath, destinationPath);
+        indexMoved(sourcePath, metadata);
+        return metadata;
+    }
+
+    @Override
+    public FileMetadata rename(String path, String newName) {
+        FileMetadata metadata = delegate.rename(path, newName);
+        indexMoved(path, metadata);
+        return metadata;
+    }
+
+    @Override
+    public FileMetadata copy(String sourcePath, String destinationPath) {
+        FileMetadata metadata = delegate.copy(sourcePath, destinationPath);
+        index(metadata);
+        return metadata;
+    }
+
+    @Override
+    public void delete(String path) {
+        delegate.delete(path);
+        try {
+            index.removeTree(path);
+        } catch (RuntimeException e) {
+            log.warn("Failed to remove '{}' from metadata index: {}", path, e.getMessage());
+        }
+    }
+
+    @Override
+    public Map<String, RuntimeException> deleteAll(List<String> paths) {
+        Map<String, RuntimeException> failures = delegate.deleteAll(paths);
+        for (String path : paths) {
+            if (path != null && !failures.containsKey(path)) {
+                try {
+                    index.removeTree(path);
+                } catch (RuntimeException e) {
+                    log.warn("Failed to remove '{}' from metadata index: {}", path, e.getMessage());
+                }
+            }
+        }
+        return failures;
+    }
+
+    @Override
+    public List<FileMetadata> list(String path, Predicate<FileMetadata> filter) {
+        return delegate.list(path, filter);
+    }
+
+    @Override
+    public List<FileMetadata> listRecursive(String path, Predicate<FileMetadata> filter) {
+        return delegate.listRecursive(path, filter);
+    }
+
+    @Override
+    public Stream<FileMetadata> listStream(String path, boolean recursive, Predicate<FileMetadata> filter) {
+        return delegate.listStream(path, recursive, filter);
+    }
+
+    @Override
+    public FileListPage listPage(String path, boolean recursive, Predicate<FileMetadata> filter, String cursor, int limit) {
+        return delegate.listPage(path, recursive, filter, cursor, limit);
+    }
+
+    @Override
+    public FileMetadata getMetadata(String path) {
+        return delegate.getMetadata(path);
+    }
+
+    @Override
+    public boolean isHealthy() {
+        return delegate.isHealthy();
+    }
+
+    private void index(FileMetadata metadata) {
+        try {
+            index.put(metadata);
+        } catch (RuntimeException e) {
+            log.warn("Failed to index '{}': {}", metadata.getPath(), e.getMessage());
+        }
+    }
+
+    /** Moves the entries of a file or a whole directory tree to their new place in the index */
+    private void indexMoved(String sourcePath, FileMetadata moved) {
+        try {
+            index.removeTree(sourcePath);
+            if (moved.isDirectory()) {
+                index.removeTree(moved.getPath());
+                try (Stream<FileMetadata> entries = delegate.listStream(moved.getPath(), true, null)) {
+                    entries.forEach(index::put);
+                }
+            }
+            index.put(moved);
+        } catch (RuntimeException e) {
+            log.warn("Failed to index move of '{}' to '{}': {}", sourcePath, moved.getPath(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        rebuildScheduler.shutdownNow();
+        if (delegate instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    /** Indexes the written file once its content, and with it its final size, is visible on close */
+    private final class IndexingOutputStream extends FilterOutputStream implements Abortable {
+        private final String path;
+        private boolean aborted;
+
+        IndexingOutputStream(OutputStream out, String path) {
+            super(out);
+            this.path = path;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            if (aborted) {
+                return;
+            }
+            try {
+                index.put(delegate.getMetadata(path));
+            } catch (RuntimeException e) {
+                log.warn("Failed to index written file '{}': {}", path, e.getMessage());
+            }
+        }
+
+        @Override
+        public void abort() throws IOException {
+            // The previous content stays in place, and so does its index entry
+            aborted = true;
+            Abortable.abort(out);
+        }
+    }
+}
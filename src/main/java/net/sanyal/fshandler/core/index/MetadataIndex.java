@@ -0,0 +1,516 @@
+package net.sanyal.fshandler.core.index;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sanyal.fshandler.core.model.FileMetadata;
+import net.sanyal.fshandler.core.model.FileQuery;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A searchable copy of the metadata of every path in a file system, kept in sorted maps and
+ * persisted to a directory on disk.
+ * <p>
+ * Entries are sorted by path, so a prefix query reads one contiguous range. Entries are also
+ * sorted by size and by modification time, so range queries on those do not scan the whole index.
+ * On disk the index is a snapshot plus journals of the changes made since. Each journal starts
+ * with a new snapshot generation, and reopening the index replays the journals on top of the
+ * snapshot. Journals are not synced to disk. After a crash the index can miss recent changes until
+ * the next {@link #rebuild}.
+ * <p>
+ * Every entry is held on the heap, so the index accepts at most {@code maxEntries} paths. A put of
+ * a new path beyond that fails, and a scan that finds more paths is abandoned, keeping the previous
+ * entries. While a rebuild is being finished, the scanned entries and the current ones are both held,
+ * so heap must be sized for twice the limit.
+ */
+@Slf4j
+public class MetadataIndex implements AutoCloseable {
+    private static final int SNAPSHOT_MAGIC = 0x46534958; // "FSIX"
+    private static final int FORMAT_VERSION = 1;
+    private static final String SNAPSHOT_FILE = "index.snapshot";
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE_TREE = 2;
+    public static final long DEFAULT_MAX_ENTRIES = 1_000_000;
+
+    private final Path directory;
+    private final long maxEntries;
+    // Serializes writers; readers go straight to the concurrent maps
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Entries entries;
+    // Changes made while a rebuild scans the file system, replayed onto its result
+    private List<Mutation> pendingDuringRebuild;
+    private long journalGeneration;
+    private DataOutputStream journal;
+    private final boolean loadedFromDisk;
+
+    public MetadataIndex(Path directory) {
+        this(directory, DEFAULT_MAX_ENTRIES);
+    }
+
+    public MetadataIndex(Path directory, long maxEntries) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Index directory must not be null");
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries must be positive");
+        }
+        this.directory = directory;
+        this.maxEntries = maxEntries;
+        this.entries = new Entries(maxEntries);
+        try {
+            Files.createDirectories(directory);
+            long snapshotGeneration = readSnapshot();
+            this.loadedFromDisk = snapshotGeneration >= 0;
+            long lastGeneration = replayJournals(Math.max(snapshotGeneration, 0));
+            openJournal(Math.max(snapshotGeneration, lastGeneration + 1));
+        } catch (IOException e) {
+            log.error("Failed to open metadata index at '{}': {}", directory, e.getMessage(), e);
+            throw new IllegalStateException("Failed to open metadata index: " + e.getMessage(), e);
+        }
+    }
+
+    /** Whether the index was restored from an earlier snapshot rather than starting out empty */
+    public boolean isLoadedFromDisk() {
+        return loadedFromDisk;
+    }
+
+    public long size() {
+        return entries.count.get();
+    }
+
+    public long getMaxEntries() {
+        return maxEntries;
+    }
+
+    public FileMetadata get(String path) {
+        return entries.byPath.get(path);
+    }
+
+    /**
+     * Adds or replaces the entry for a path
+     * @throws IllegalStateException if the path is new and the index already holds {@code maxEntries} paths
+     */
+    public void put(FileMetadata metadata) {
+        apply(new Mutation(OP_PUT, metadata.getPath(), metadata));
+    }
+
+    /** Removes a path and every path below it */
+    public void removeTree(String path) {
+        String key = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        apply(new Mutation(OP_REMOVE_TREE, key, null));
+    }
+
+    private void apply(Mutation mutation) {
+        lock.lock();
+        try {
+            if (mutation.op == OP_PUT && !entries.hasRoomFor(mutation.path)) {
+                throw new IllegalStateException("Metadata index is full with " + maxEntries + " entries");
+            }
+            mutation.applyTo(entries);
+            if (pendingDuringRebuild != null) {
+                pendingDuringRebuild.add(mutation);
+            }
+            if (journal != null) {
+                try {
+                    mutation.writeTo(journal);
+                    journal.flush();
+                } catch (IOException e) {
+                    // The index stays correct in memory; a rebuild writes a fresh snapshot
+                    log.warn("Failed to journal metadata index change for '{}': {}", mutation.path, e.getMessage());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} entries whose path starts with {@code prefix} and which pass
+     * {@code filter}. A prefix, or the literal part of a path glob, is used to read one range of the
+     * path order. Without either, the size or modification time range of a {@link FileQuery}
+     * selects the range. Results follow the order of the range that was read.
+     * <p>
+     * The prefix is compared as a string, like an S3 prefix: {@code docs} also matches
+     * {@code docs2/a.txt}, and {@code docs/} matches only what lies below the directory. A query
+     * with neither a prefix nor a range, such as a name glob alone, reads the whole index until
+     * {@code limit} entries matched.
+     */
+    public List<FileMetadata> search(String prefix, Predicate<FileMetadata> filter, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        String effectivePrefix = prefix != null ? prefix : "";
+        FileQuery query = filter instanceof FileQuery fileQuery ? fileQuery : null;
+        if (query != null && query.literalPrefix().startsWith(effectivePrefix)) {
+            effectivePrefix = query.literalPrefix();
+        }
+        Predicate<FileMetadata> effectiveFilter = filter != null ? filter : metadata -> true;
+        String rangePrefix = effectivePrefix;
+        return candidates(entries, rangePrefix, query)
+            .filter(metadata -> metadata.getPath().startsWith(rangePrefix))
+            .filter(effectiveFilter)
+            .limit(Math.min(limit, FileQuery.maxResultsOf(filter)))
+            .collect(Collectors.toList());
+    }
+
+    private static Stream<FileMetadata> candidates(Entries entries, String prefix, FileQuery query) {
+        if (!prefix.isEmpty() || query == null) {
+            return entries.byPath.tailMap(prefix).entrySet().stream()
+                .takeWhile(entry -> entry.getKey().startsWith(prefix))
+                .map(java.util.Map.Entry::getValue);
+        }
+        if (query.getMinSize() != null || query.getMaxSize() != null) {
+            return range(entries, entries.bySize, query.getMinSize(), query.getMaxSize());
+        }
+        if (query.getModifiedAfter() != null || query.getModifiedBefore() != null) {
+            Long after = query.getModifiedAfter() != null ? query.getModifiedAfter().toEpochMilli() : null;
+            Long before = query.getModifiedBefore() != null ? query.getModifiedBefore().toEpochMilli() : null;
+            return range(entries, entries.byModified, after, before);
+        }
+        return entries.byPath.values().stream();
+    }
+
+    /** Entries whose key lies in the inclusive range; the filter settles the exact bounds */
+    private static Stream<FileMetadata> range(Entries entries, NavigableSet<Key> keys, Long from, Long to) {
+        NavigableSet<Key> range = from != null ? keys.tailSet(new Key(from, ""), true) : keys;
+        return range.stream()
+            .takeWhile(key -> to == null || key.value() <= to)
+            .map(key -> entries.byPath.get(key.path()))
+            .filter(java.util.Objects::nonNull);
+    }
+
+    /**
+     * Marks the start of a full scan. Changes applied until {@link #finishRebuild} are replayed on
+     * top of the scanned entries, so they are not lost to a scan that read the file system before them.
+     */
+    public void startRebuild() {
+        lock.lock();
+        try {
+            pendingDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the index with {@code scanned}, the result of a full scan started with
+     * {@link #startRebuild}, and writes it out as the new snapshot.
+     * @throws IllegalStateException if the scan holds more than {@code maxEntries} paths; the rebuild
+     *         is then still in progress and must be aborted
+     */
+    public void finishRebuild(Stream<FileMetadata> scanned) {
+        Entries rebuilt = new Entries(maxEntries);
+        // Stops reading the scan at the limit instead of holding all of it
+        scanned.forEach(metadata -> {
+            if (!rebuilt.hasRoomFor(metadata.getPath())) {
+                throw new IllegalStateException("Scan found more than " + maxEntries
+                    + " paths, the metadata index limit; keeping the previous index");
+            }
+            rebuilt.put(metadata);
+        });
+        long generation;
+        lock.lock();
+        try {
+            if (pendingDuringRebuild == null) {
+                throw new IllegalStateException("No rebuild in progress");
+            }
+            pendingDuringRebuild.forEach(mutation -> mutation.applyTo(rebuilt));
+            pendingDuringRebuild = null;
+            entries = rebuilt;
+            // Changes from here on go to a new journal, replayed on top of the snapshot written below
+            generation = journalGeneration + 1;
+            closeJournal();
+            openJournal(generation);
+        } catch (IOException e) {
+            log.error("Failed to rotate metadata index journal in '{}': {}", directory, e.getMessage(), e);
+            throw new RuntimeException("Failed to rotate metadata index journal: " + e.getMessage(), e);
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writeSnapshot(rebuilt, generation);
+            deleteJournalsBefore(generation);
+        } catch (IOException e) {
+            log.error("Failed to write metadata index snapshot to '{}': {}", directory, e.getMessage(), e);
+            throw new RuntimeException("Failed to write metadata index snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    /** Abandons a rebuild that failed, keeping the current entries */
+    public void abortRebuild() {
+        lock.lock();
+        try {
+            pendingDuringRebuild = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long readSnapshot() throws IOException {
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != FORMAT_VERSION) {
+                log.warn("Ignoring metadata index snapshot '{}' in an unknown format", snapshot);
+                return -1;
+            }
+            long generation = in.readLong();
+            long count = in.readLong();
+            if (count > maxEntries) {
+                log.warn("Ignoring metadata index snapshot '{}' of {} entries, more than the limit of {}",
+                    snapshot, count, maxEntries);
+                return -1;
+            }
+            Entries loaded = new Entries(maxEntries);
+            for (long i = 0; i < count; i++) {
+                loaded.put(readMetadata(in));
+            }
+            entries = loaded;
+            log.info("Loaded {} entries from metadata index snapshot '{}'", count, snapshot);
+            return generation;
+        } catch (NoSuchFileException e) {
+            return -1;
+        } catch (EOFException e) {
+            log.warn("Ignoring truncated metadata index snapshot '{}'", snapshot);
+            entries = new Entries(maxEntries);
+            return -1;
+        }
+    }
+
+    private void writeSnapshot(Entries snapshotEntries, long generation) throws IOException {
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        // Taken from a live map, so it may already contain later changes; replaying them again is harmless
+        List<FileMetadata> values = new ArrayList<>(snapshotEntries.byPath.values());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(generation);
+            out.writeLong(values.size());
+            for (FileMetadata metadata : values) {
+                writeMetadata(out, metadata);
+            }
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Replays the journals from {@code fromGeneration} on, returning the last generation found */
+    private long replayJournals(long fromGeneration) throws IOException {
+        long last = fromGeneration - 1;
+        for (var journalFile : journalFiles().tailMap(fromGeneration).entrySet()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journalFile.getValue())))) {
+                while (true) {
+                    Mutation.readFrom(in).applyTo(entries);
+                }
+            } catch (EOFException e) {
+                // The end of the journal, or a record cut short by a crash
+            } catch (IOException e) {
+                log.warn("Stopped replaying damaged metadata index journal '{}': {}", journalFile.getValue(), e.getMessage());
+            }
+            last = journalFile.getKey();
+        }
+        return last;
+    }
+
+    private void deleteJournalsBefore(long generation) throws IOException {
+        for (Path journalFile : journalFiles().headMap(generation).values()) {
+            Files.deleteIfExists(journalFile);
+        }
+    }
+
+    private TreeMap<Long, Path> journalFiles() throws IOException {
+        TreeMap<Long, Path> journals = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, JOURNAL_PREFIX + "*" + JOURNAL_SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    journals.put(Long.parseLong(name.substring(JOURNAL_PREFIX.length(), name.length() - JOURNAL_SUFFIX.length())), file);
+                } catch (NumberFormatException e) {
+                    log.warn("Ignoring unexpected file '{}' in metadata index directory", file);
+                }
+            }
+        }
+        return journals;
+    }
+
+    private void openJournal(long generation) throws IOException {
+        journalGeneration = generation;
+        journal = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+            directory.resolve(JOURNAL_PREFIX + generation + JOURNAL_SUFFIX),
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+    }
+
+    private void closeJournal() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closeJournal();
+        } catch (IOException e) {
+            log.warn("Failed to close metadata index journal: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void writeMetadata(DataOutputStream out, FileMetadata metadata) throws IOException {
+        out.writeUTF(metadata.getPath());
+        out.writeUTF(metadata.getName());
+        out.writeLong(metadata.getSize());
+        writeInstant(out, metadata.getCreationTime());
+        writeInstant(out, metadata.getLastModifiedTime());
+        out.writeBoolean(metadata.isDirectory());
+    }
+
+    private static FileMetadata readMetadata(DataInputStream in) throws IOException {
+        return FileMetadata.builder()
+            .path(in.readUTF())
+            .name(in.readUTF())
+            .size(in.readLong())
+            .creationTime(readInstant(in))
+            .lastModifiedTime(readInstant(in))
+            .isDirectory(in.readBoolean())
+            .build();
+    }
+
+    private static void writeInstant(DataOutputStream out, Instant instant) throws IOException {
+        out.writeBoolean(instant != null);
+        if (instant != null) {
+            out.writeLong(instant.getEpochSecond());
+            out.writeInt(instant.getNano());
+        }
+    }
+
+    private static Instant readInstant(DataInputStream in) throws IOException {
+        return in.readBoolean() ? Instant.ofEpochSecond(in.readLong(), in.readInt()) : null;
+    }
+
+    /** A sort key of a secondary order, tie-broken by path */
+    private record Key(long value, String path) implements Comparable<Key> {
+        private static final Comparator<Key> ORDER = Comparator.comparingLong(Key::value).thenComparing(Key::path);
+
+        @Override
+        public int compareTo(Key other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    /** The entries in path order, plus the size and modification time orders over the same paths */
+    private static final class Entries {
+        final ConcurrentSkipListMap<String, FileMetadata> byPath = new ConcurrentSkipListMap<>();
+        final ConcurrentSkipListSet<Key> bySize = new ConcurrentSkipListSet<>();
+        final ConcurrentSkipListSet<Key> byModified = new ConcurrentSkipListSet<>();
+        // The skip list counts its nodes on every size() call
+        final AtomicLong count = new AtomicLong();
+        final long maxEntries;
+
+        Entries(long maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        boolean hasRoomFor(String path) {
+            return count.get() < maxEntries || byPath.containsKey(path);
+        }
+
+        void put(FileMetadata metadata) {
+            FileMetadata previous = byPath.put(metadata.getPath(), metadata);
+            if (previous != null) {
+                removeKeys(previous);
+            } else {
+                count.incrementAndGet();
+            }
+            bySize.add(new Key(metadata.getSize(), metadata.getPath()));
+            if (metadata.getLastModifiedTime() != null) {
+                byModified.add(new Key(metadata.getLastModifiedTime().toEpochMilli(), metadata.getPath()));
+            }
+        }
+
+        void removeTree(String path) {
+            remove(path);
+            remove(path + "/");
+            // Every path below sorts between "path/" and "path0", '0' being the character after '/'
+            var below = byPath.subMap(path + "/", path + "0");
+            for (FileMetadata metadata : new ArrayList<>(below.values())) {
+                remove(metadata.getPath());
+            }
+        }
+
+        private void remove(String path) {
+            FileMetadata previous = byPath.remove(path);
+            if (previous != null) {
+                removeKeys(previous);
+                count.decrementAndGet();
+            }
+        }
+
+        private void removeKeys(FileMetadata metadata) {
+            bySize.remove(new Key(metadata.getSize(), metadata.getPath()));
+            if (metadata.getLastModifiedTime() != null) {
+                byModified.remove(new Key(metadata.getLastModifiedTime().toEpochMilli(), metadata.getPath()));
+            }
+        }
+    }
+
+    private record Mutation(byte op, String path, FileMetadata metadata) {
+        void applyTo(Entries target) {
+            if (op == OP_PUT) {
+                // Replayed changes were within the limit when made; a lowered limit drops the excess
+                if (target.hasRoomFor(path)) {
+                    target.put(metadata);
+                }
+            } else {
+                target.removeTree(path);
+            }
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeByte(op);
+            if (op == OP_PUT) {
+                writeMetadata(out, metadata);
+            } else {
+                out.writeUTF(path);
+            }
+        }
+
+        static Mutation readFrom(DataInputStream in) throws IOException {
+            byte op = in.readByte();
+            if (op == OP_PUT) {
+                FileMetadata metadata = readMetadata(in);
+                return new Mutation(op, metadata.getPath(), metadata);
+            }
+            if (op == OP_REMOVE_TREE) {
+                return new Mutation(op, in.readUTF(), null);
+            }
+            throw new IOException("Unknown metadata index journal record " + op);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package net.sanyal.fshandler.core.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Implemented by output streams whose content only replaces the target once they are closed.
+ * Aborting such a stream instead discards everything written to it and leaves the previous content
+ * of the target, if any, in place. Closing the stream after aborting it has no further effect.
+ */
+public interface Abortable {
+    /** Discards everything written so far and releases the stream */
+    void abort() throws IOException;
+
+    /**
+     * Aborts {@code out} if it supports aborting. Any other stream is closed instead, which keeps
+     * whatever has been written to it.
+     */
+    static void abort(OutputStream out) throws IOException {
+        if (out instanceof Abortable abortable) {
+            abortable.abort();
+        } else {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package net.sanyal.fshandler.core.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Output stream that writes a POSIX (pax) tar archive. Each entry is started with
+ * {@link #putEntry}, followed by exactly as many content bytes as it declared.
+ * <p>
+ * Headers are plain ustar. Names that do not fit into its 100 byte name field, or are not ASCII,
+ * and sizes of 8 GB and above are carried in a pax extended header instead, which every modern tar
+ * reads. Nothing is buffered beyond the current 512 byte header.
+ */
+public class TarOutputStream extends FilterOutputStream {
+    private static final int BLOCK_SIZE = 512;
+    private static final int NAME_LENGTH = 100;
+    private static final long MAX_USTAR_SIZE = 077777777777L;
+
+    private long remaining;
+    private long entrySize;
+    private boolean entryOpen;
+    private boolean finished;
+
+    public TarOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    /**
+     * Starts a new entry, closing the previous one. Directory names get a trailing '/' and must have
+     * a size of 0.
+     */
+    public void putEntry(String name, long size, Instant lastModified, boolean directory) throws IOException {
+        if (finished) {
+            throw new IOException("Archive is already finished");
+        }
+        if (name == null || name.isEmpty() || size < 0 || (directory && size != 0)) {
+            throw new IllegalArgumentException("Entry needs a name and a size, which must be 0 for directories");
+        }
+        closeEntry();
+        String entryName = directory && !name.endsWith("/") ? name + "/" : name;
+        long mtime = lastModified != null ? Math.max(0, lastModified.getEpochSecond()) : 0;
+        byte[] nameBytes = entryName.getBytes(StandardCharsets.UTF_8);
+        boolean longName = nameBytes.length > NAME_LENGTH || nameBytes.length != entryName.length();
+        boolean largeSize = size > MAX_USTAR_SIZE;
+        if (longName || largeSize) {
+            StringBuilder records = new StringBuilder();
+            if (longName) {
+                records.append(paxRecord("path", entryName));
+            }
+            if (largeSize) {
+                records.append(paxRecord("size", Long.toString(size)));
+            }
+            byte[] extended = records.toString().getBytes(StandardCharsets.UTF_8);
+            writeHeader(asciiFallback(entryName), extended.length, mtime, (byte) 'x');
+            out.write(extended);
+            pad(extended.length);
+        }
+        writeHeader(longName ? asciiFallback(entryName) : entryName, largeSize ? 0 : size, mtime,
+            directory ? (byte) '5' : (byte) '0');
+        entrySize = size;
+        remaining = size;
+        entryOpen = true;
+    }
+
+    /** Pads the current entry to a full block; fails if fewer bytes than declared were written */
+    public void closeEntry() throws IOException {
+        if (!entryOpen) {
+            return;
+        }
+        if (remaining != 0) {
+            throw new IOException("Entry is " + remaining + " bytes short of its declared size");
+        }
+        pad(entrySize);
+        entryOpen = false;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureRoom(1);
+        out.write(b);
+        remaining--;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureRoom(len);
+        out.write(b, off, len);
+        remaining -= len;
+    }
+
+    /** Writes the end-of-archive marker, without closing the underlying stream */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        closeEntry();
+        out.write(new byte[2 * BLOCK_SIZE]);
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void ensureRoom(int len) throws IOException {
+        if (!entryOpen || len > remaining) {
+            throw new IOException("Write exceeds the declared size of the entry");
+        }
+    }
+
+    private void writeHeader(String name, long size, long mtime, byte type) throws IOException {
+        byte[] header = new byte[BLOCK_SIZE];
+        byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(nameBytes, 0, header, 0, Math.min(NAME_LENGTH, nameBytes.length));
+        octal(header, 100, 8, type == '5' ? 0755 : 0644);
+        octal(header, 108, 8, 0);
+        octal(header, 116, 8, 0);
+        octal(header, 124, 12, size);
+        octal(header, 136, 12, mtime);
+        header[156] = type;
+        System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 6);
+        header[263] = '0';
+        header[264] = '0';
+        // The checksum is computed with its own field taken as spaces
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        octal(header, 148, 7, checksum);
+        header[155] = ' ';
+        out.write(header);
+    }
+
+    /** Writes {@code value} as zero-padded octal digits followed by a NUL, filling {@code length} bytes */
+    private static void octal(byte[] header, int offset, int length, long value) {
+        String digits = Long.toOctalString(value);
+        int width = length - 1;
+        for (int i = 0; i < width; i++) {
+            int digit = i - (width - digits.length());
+            header[offset + i] = digit < 0 ? (byte) '0' : (byte) digits.charAt(digit);
+        }
+        header[offset + width] = 0;
+    }
+
+    private void pad(long written) throws IOException {
+        int partial = (int) (written % BLOCK_SIZE);
+        if (partial != 0) {
+            out.write(new byte[BLOCK_SIZE - partial]);
+        }
+    }
+
+    /** A pax record is prefixed by its own length in bytes, including the digits of that length */
+    private static String paxRecord(String key, String value) {
+        int length = key.length() + value.getBytes(StandardCharsets.UTF_8).length + 3;
+        int total = length + Integer.toString(length).length();
+        if (Integer.toString(total).length() > Integer.toString(length).length()) {
+            total++;
+        }
+        return total + " " + key + "=" + value + "\n";
+    }
+
+    /** Name for the ustar field of an entry whose real name is in a pax header, for readers without pax support */
+    private static String asciiFallback(String name) {
+        String ascii = name.replaceAll("[^\\x20-\\x7e]", "_");
+        return ascii.length() > NAME_LENGTH ? ascii.substring(ascii.length() - NAME_LENGTH) : ascii;
+    }
+}
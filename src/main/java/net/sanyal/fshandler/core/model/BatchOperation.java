@@ -0,0 +1,30 @@
+package net.sanyal.fshandler.core.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+
+/**
+ * One operation of a batch request. {@code destination} is only used by moves and copies and {@code newName}
+ * only by renames.
+ */
+@Value
+@Builder
+@Jacksonized
+public class BatchOperation {
+    public enum Type {
+        @JsonProperty("create") CREATE,
+        @JsonProperty("mkdir") MKDIR,
+        @JsonProperty("move") MOVE,
+        @JsonProperty("copy") COPY,
+        @JsonProperty("rename") RENAME,
+        @JsonProperty("delete") DELETE,
+        @JsonProperty("getMetadata") GET_METADATA
+    }
+
+    Type op;
+    String path;
+    String destination;
+    String newName;
+}
@@ -0,0 +1,21 @@
+package net.sanyal.fshandler.core.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Outcome of one operation of a batch request, identified by its position in the request.
+ * {@code status} is the HTTP status the single-operation endpoint would have answered with.
+ */
+@Value
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchResult {
+    int index;
+    BatchOperation.Type op;
+    String path;
+    int status;
+    FileMetadata metadata;
+    String error;
+}
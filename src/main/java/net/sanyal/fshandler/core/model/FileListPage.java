@@ -0,0 +1,14 @@
+package net.sanyal.fshandler.core.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+@Builder
+public class FileListPage {
+    List<FileMetadata> items;
+    /** Cursor to pass for the next page, or null when the listing is complete */
+    String nextCursor;
+}
@@ -0,0 +1,171 @@
+package net.sanyal.fshandler.core.model;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.Value;
+
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * A structured listing filter that backends can inspect to narrow what they fetch, instead of
+ * testing an opaque predicate against every entry.
+ * <p>
+ * A glob without a '/' matches entry names. A glob with a '/' matches entry paths from the file
+ * system root; its literal leading part bounds where matches can live, which lets S3 narrow the
+ * listed prefix and the local walker skip subtrees. All criteria that are set must match. Passed
+ * as a plain {@link Predicate} it behaves like any other filter.
+ */
+@Value
+public class FileQuery implements Predicate<FileMetadata> {
+    private static final Pattern GLOB_META = Pattern.compile("[*?\\[{\\\\]");
+    private static final Pattern BRACES_WITH_SEPARATOR = Pattern.compile("\\{[^}]*/[^}]*}");
+
+    public enum EntryType { ALL, FILES, DIRECTORIES }
+
+    String glob;
+    /** Lower-case extensions without the dot */
+    Set<String> extensions;
+    Long minSize;
+    Long maxSize;
+    Instant modifiedAfter;
+    Instant modifiedBefore;
+    EntryType entryType;
+    /** Maximum number of entries a listing returns; null for no limit */
+    Integer maxResults;
+
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    PathMatcher globMatcher;
+
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    PathMatcher[] segmentMatchers;
+
+    @Builder
+    private FileQuery(String glob, Set<String> extensions, Long minSize, Long maxSize, Instant modifiedAfter,
+                      Instant modifiedBefore, EntryType entryType, Integer maxResults) {
+        if (maxResults != null && maxResults < 1) {
+            throw new IllegalArgumentException("Max results must be positive");
+        }
+        this.glob = glob;
+        this.extensions = extensions == null ? null : extensions.stream()
+            .map(extension -> extension.startsWith(".") ? extension.substring(1) : extension)
+            .map(extension -> extension.toLowerCase(Locale.ROOT))
+            .collect(Collectors.toUnmodifiableSet());
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.modifiedAfter = modifiedAfter;
+        this.modifiedBefore = modifiedBefore;
+        this.entryType = entryType != null ? entryType : EntryType.ALL;
+        this.maxResults = maxResults;
+        // Compiled once here rather than for every entry tested
+        this.globMatcher = glob != null ? FileSystems.getDefault().getPathMatcher("glob:" + glob) : null;
+        this.segmentMatchers = isPathGlob() && !BRACES_WITH_SEPARATOR.matcher(glob).find()
+            ? compileSegments(glob.split("/"))
+            : null;
+    }
+
+    private static PathMatcher[] compileSegments(String[] segments) {
+        PathMatcher[] matchers = new PathMatcher[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            matchers[i] = segments[i].contains("**")
+                ? null
+                : FileSystems.getDefault().getPathMatcher("glob:" + segments[i]);
+        }
+        return matchers;
+    }
+
+    /** The result cap carried by {@code filter} when it is a query, otherwise no cap */
+    public static long maxResultsOf(Predicate<FileMetadata> filter) {
+        return filter instanceof FileQuery query && query.maxResults != null ? query.maxResults : Long.MAX_VALUE;
+    }
+
+    /** Whether {@code filter} is a query that rules out everything below the directory at {@code directoryPath} */
+    public static boolean excludesSubtree(Predicate<FileMetadata> filter, String directoryPath) {
+        return filter instanceof FileQuery query && !query.mayContainMatches(directoryPath);
+    }
+
+    /** Whether the glob matches whole paths rather than names */
+    public boolean isPathGlob() {
+        return glob != null && glob.indexOf('/') >= 0;
+    }
+
+    /**
+     * The literal part of a path glob before its first wildcard; every matching path starts with it.
+     * Empty when the glob is absent or only matches names.
+     */
+    public String literalPrefix() {
+        if (!isPathGlob()) {
+            return "";
+        }
+        java.util.regex.Matcher meta = GLOB_META.matcher(glob);
+        return meta.find() ? glob.substring(0, meta.start()) : glob;
+    }
+
+    /**
+     * Whether entries below the directory at {@code directoryPath} can match the glob. Returns false
+     * only when the directory provably lies outside every path the glob can match.
+     */
+    public boolean mayContainMatches(String directoryPath) {
+        if (segmentMatchers == null || directoryPath.isEmpty()) {
+            return true;
+        }
+        String[] segments = directoryPath.split("/");
+        for (int i = 0; i < segments.length; i++) {
+            if (i < segmentMatchers.length && segmentMatchers[i] == null) {
+                return true; // '**' can span any number of directories
+            }
+            if (i >= segmentMatchers.length - 1) {
+                return false; // Matches are never deeper than the glob
+            }
+            if (!segmentMatchers[i].matches(Paths.get(segments[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean test(FileMetadata metadata) {
+        if (entryType == EntryType.FILES && metadata.isDirectory()
+            || entryType == EntryType.DIRECTORIES && !metadata.isDirectory()) {
+            return false;
+        }
+        if (globMatcher != null
+            && !globMatcher.matches(Paths.get(isPathGlob() ? metadata.getPath() : metadata.getName()))) {
+            return false;
+        }
+        if (extensions != null && !extensions.isEmpty()) {
+            String name = metadata.getName().toLowerCase(Locale.ROOT);
+            int dot = name.lastIndexOf('.');
+            if (dot < 0 || !extensions.contains(name.substring(dot + 1))) {
+                return false;
+            }
+        }
+        if (minSize != null && metadata.getSize() < minSize || maxSize != null && metadata.getSize() > maxSize) {
+            return false;
+        }
+        if (modifiedAfter != null || modifiedBefore != null) {
+            Instant modified = metadata.getLastModifiedTime();
+            if (modified == null
+                || modifiedAfter != null && modified.isBefore(modifiedAfter)
+                || modifiedBefore != null && !modified.isBefore(modifiedBefore)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
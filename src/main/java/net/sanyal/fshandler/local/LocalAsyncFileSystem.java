@@ -0,0 +1,144 @@
+package net.sanyal.fshandler.local;
+
+import net.sanyal.fshandler.core.AsyncFileSystemAdapter;
+import net.sanyal.fshandler.core.FileSystem;
+import net.sanyal.fshandler.core.PathNotFoundException;
+import net.sanyal.fshandler.core.model.FileMetadata;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Asynchronous access to a {@link LocalFileSystem}. File content is read and written through
+ * {@link AsynchronousFileChannel}; metadata operations, which have no asynchronous form in NIO,
+ * run on the executor.
+ * <p>
+ * When the local backend is wrapped, for example by a metadata cache or index, metadata operations
+ * and writes go through the wrapper so that it sees every change, and only reads use the channel.
+ */
+@Slf4j
+public class LocalAsyncFileSystem extends AsyncFileSystemAdapter {
+    private final LocalFileSystem localFileSystem;
+
+    public LocalAsyncFileSystem(LocalFileSystem localFileSystem, ExecutorService executor) {
+        this(localFileSystem, localFileSystem, executor);
+    }
+
+    /**
+     * @param fileSystem the file system wrapping {@code localFileSystem}, or {@code localFileSystem} itself
+     */
+    public LocalAsyncFileSystem(FileSystem fileSystem, LocalFileSystem localFileSystem, ExecutorService executor) {
+        super(fileSystem, executor);
+        if (localFileSystem == null) {
+            throw new IllegalArgumentException("Local file system must not be null");
+        }
+        this.localFileSystem = localFileSystem;
+    }
+
+    @Override
+    public CompletableFuture<ByteBuffer> readFile(String path, long offset, int length) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path must not be null when reading a file");
+        }
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Offset and length must not be negative");
+        }
+        AsynchronousFileChannel channel;
+        try {
+            channel = AsynchronousFileChannel.open(localFileSystem.resolveFullPath(path),
+                Set.of(StandardOpenOption.READ), executor);
+        } catch (NoSuchFileException e) {
+            log.debug("File '{}' to read not found", path);
+            return CompletableFuture.failedFuture(new PathNotFoundException(path, e));
+        } catch (IOException e) {
+            log.error("Failed to read file at path '{}': {}", path, e.getMessage(), e);
+            return CompletableFuture.failedFuture(new UncheckedIOException("Failed to read file: " + e.getMessage(), e));
+        }
+        CompletableFuture<ByteBuffer> result = new CompletableFuture<>();
+        readFully(channel, ByteBuffer.allocate(length), offset, result);
+        return result.whenComplete((buffer, e) -> closeQuietly(channel, path));
+    }
+
+    @Override
+    public CompletableFuture<FileMetadata> writeFile(String path, ByteBuffer content) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path must not be null when writing to a file");
+        }
+        if (fileSystem != localFileSystem) {
+            // A write behind the wrapper's back would leave its cached or indexed metadata stale
+            return super.writeFile(path, content);
+        }
+        AsynchronousFileChannel channel;
+        try {
+            Path filePath = localFileSystem.resolveFullPath(path);
+            Files.createDirectories(filePath.getParent());
+            channel = AsynchronousFileChannel.open(filePath, Set.of(StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING), executor);
+        } catch (IOException e) {
+            log.error("Failed to write to file at path '{}': {}", path, e.getMessage(), e);
+            return CompletableFuture.failedFuture(new UncheckedIOException("Failed to write to file: " + e.getMessage(), e));
+        }
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        writeFully(channel, content, 0, written);
+        return written
+            .whenComplete((v, e) -> closeQuietly(channel, path))
+            .thenApplyAsync(v -> localFileSystem.getMetadata(path), executor);
+    }
+
+    private void readFully(AsynchronousFileChannel channel, ByteBuffer buffer, long position,
+                           CompletableFuture<ByteBuffer> result) {
+        channel.read(buffer, position, null, new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(Integer read, Void attachment) {
+                if (read < 0 || !buffer.hasRemaining()) {
+                    result.complete(buffer.flip());
+                } else {
+                    readFully(channel, buffer, position + read, result);
+                }
+            }
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                result.completeExceptionally(e);
+            }
+        });
+    }
+
+    private void writeFully(AsynchronousFileChannel channel, ByteBuffer content, long position,
+                            CompletableFuture<Void> result) {
+        channel.write(content, position, null, new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(Integer written, Void attachment) {
+                if (content.hasRemaining()) {
+                    writeFully(channel, content, position + written, result);
+                } else {
+                    result.complete(null);
+                }
+            }
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                result.completeExceptionally(e);
+            }
+        });
+    }
+
+    private void closeQuietly(AsynchronousFileChannel channel, String path) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close channel for path '{}': {}", path, e.getMessage());
+        }
+    }
+}
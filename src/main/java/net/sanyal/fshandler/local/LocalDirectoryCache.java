@@ -0,0 +1,274 @@
+package net.sanyal.fshandler.local;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sanyal.fshandler.core.model.FileMetadata;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * Caches the listings of hot local directories and keeps them current from {@link WatchService}
+ * events instead of re-enumerating and re-stat-ing every entry on each listing.
+ * <p>
+ * A directory is registered with the watch service the first time it is listed. Create, modify and
+ * delete events then patch its snapshot one entry at a time; an overflow, where the platform dropped
+ * events, discards the snapshot so the next listing rescans the directory. At most
+ * {@code maxDirectories} directories are cached and watched, the least recently listed one is
+ * evicted beyond that. Changes inside a subdirectory do not reach the parent's watch, so a cached
+ * subdirectory entry may carry a stale modification time.
+ */
+@Slf4j
+final class LocalDirectoryCache implements AutoCloseable {
+    private final WatchService watchService;
+    private final BiFunction<Path, BasicFileAttributes, FileMetadata> metadataFactory;
+    private final Predicate<Path> visible;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Path, Snapshot> snapshots;
+    // Looked up by the watcher, which must not count as a use in the LRU order of snapshots
+    private final Map<WatchKey, Snapshot> snapshotsByKey = new HashMap<>();
+    private final Thread watcher;
+
+    /** Enumerates a directory when its listing is not cached */
+    @FunctionalInterface
+    interface DirectoryLoader {
+        List<FileMetadata> load() throws IOException;
+    }
+
+    LocalDirectoryCache(java.nio.file.FileSystem fileSystem, int maxDirectories,
+                        BiFunction<Path, BasicFileAttributes, FileMetadata> metadataFactory,
+                        Predicate<Path> visible) throws IOException {
+        this.watchService = fileSystem.newWatchService();
+        this.metadataFactory = metadataFactory;
+        this.visible = visible;
+        this.snapshots = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Snapshot> eldest) {
+                if (size() > maxDirectories) {
+                    forget(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.watcher = Thread.ofPlatform().name("local-directory-watcher").daemon(true).start(this::processEvents);
+    }
+
+    /**
+     * Returns the entries of {@code dir}, from its snapshot when one is current, otherwise from
+     * {@code loader}, in which case the directory starts being watched.
+     */
+    List<FileMetadata> list(Path dir, DirectoryLoader loader) throws IOException {
+        lock.lock();
+        try {
+            Snapshot snapshot = snapshots.get(dir);
+            if (snapshot != null && snapshot.complete) {
+                return new ArrayList<>(snapshot.entries.values());
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // Watch before enumerating, so that no change made during the enumeration goes unseen
+        WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Snapshot loading = new Snapshot(dir, key);
+        install(loading);
+        List<FileMetadata> entries;
+        try {
+            entries = loader.load();
+        } catch (IOException | RuntimeException e) {
+            invalidate(dir);
+            throw e;
+        }
+        lock.lock();
+        try {
+            // Events that arrived while loading may or may not be reflected in the entries
+            if (snapshots.get(dir) == loading && !loading.stale) {
+                entries.forEach(metadata -> loading.entries.put(metadata.getName(), metadata));
+                loading.complete = true;
+            } else if (snapshots.get(dir) == loading) {
+                snapshots.remove(dir);
+                forget(loading);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return entries;
+    }
+
+    /** Drops the snapshots of {@code path} and of every directory below it */
+    void invalidateTree(Path path) {
+        lock.lock();
+        try {
+            snapshots.entrySet().removeIf(entry -> {
+                if (entry.getKey().startsWith(path)) {
+                    forget(entry.getValue());
+                    return true;
+                }
+                return false;
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Drops the snapshot of {@code dir} */
+    void invalidate(Path dir) {
+        lock.lock();
+        try {
+            Snapshot snapshot = snapshots.remove(dir);
+            if (snapshot != null) {
+                forget(snapshot);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return snapshots.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void install(Snapshot snapshot) {
+        lock.lock();
+        try {
+            Snapshot previous = snapshots.put(snapshot.dir, snapshot);
+            if (previous != null && previous.key != snapshot.key) {
+                previous.key.cancel();
+            }
+            snapshotsByKey.put(snapshot.key, snapshot);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Stops tracking a snapshot that has been removed from the LRU map; callers hold the lock */
+    private void forget(Snapshot snapshot) {
+        // The same directory always yields the same key, which a newer snapshot may still use
+        if (snapshotsByKey.get(snapshot.key) == snapshot) {
+            snapshotsByKey.remove(snapshot.key);
+            snapshot.key.cancel();
+        }
+    }
+
+    private void processEvents() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (ClosedWatchServiceException e) {
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            Path dir = (Path) key.watchable();
+            // Read attributes before taking the lock, so listings are not held up by the stat calls
+            List<Patch> patches = new ArrayList<>();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    patches.add(Patch.OVERFLOW);
+                } else {
+                    Path name = (Path) event.context();
+                    if (!visible.test(dir.resolve(name))) {
+                        continue;
+                    }
+                    patches.add(new Patch(name.toString(), event.kind() == StandardWatchEventKinds.ENTRY_DELETE
+                        ? null
+                        : readMetadata(dir.resolve(name))));
+                }
+            }
+            boolean valid = key.reset();
+            apply(key, patches, valid);
+        }
+    }
+
+    private FileMetadata readMetadata(Path entry) {
+        try {
+            return metadataFactory.apply(entry, Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS));
+        } catch (IOException e) {
+            // Gone again by the time the event is handled; a delete event follows
+            return null;
+        }
+    }
+
+    private void apply(WatchKey key, List<Patch> patches, boolean valid) {
+        lock.lock();
+        try {
+            Snapshot snapshot = snapshotsByKey.get(key);
+            if (snapshot == null) {
+                return;
+            }
+            boolean overflow = patches.contains(Patch.OVERFLOW);
+            if (!valid || overflow || !snapshot.complete) {
+                if (overflow) {
+                    log.debug("Watch events for '{}' overflowed, rescanning on next listing", snapshot.dir);
+                }
+                snapshot.stale = true;
+                if (snapshot.complete || !valid) {
+                    snapshots.remove(snapshot.dir);
+                    forget(snapshot);
+                }
+                return;
+            }
+            for (Patch patch : patches) {
+                if (patch.metadata == null) {
+                    snapshot.entries.remove(patch.name);
+                } else {
+                    snapshot.entries.put(patch.name, patch.metadata);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.warn("Failed to close watch service: {}", e.getMessage());
+        }
+        watcher.interrupt();
+    }
+
+    private static final class Snapshot {
+        final Path dir;
+        final WatchKey key;
+        final LinkedHashMap<String, FileMetadata> entries = new LinkedHashMap<>();
+        boolean complete;
+        boolean stale;
+
+        Snapshot(Path dir, WatchKey key) {
+            this.dir = dir;
+            this.key = key;
+        }
+    }
+
+    /** A change to one entry: new metadata, or null when it is gone */
+    private record Patch(String name, FileMetadata metadata) {
+        static final Patch OVERFLOW = new Patch(null, null);
+    }
+}
@@ -1,36 +1,103 @@
 package net.sanyal.fshandler.local;
 
 import net.sanyal.fshandler.core.FileSystem;
+import net.sanyal.fshandler.core.PartialDeleteException;
+import net.sanyal.fshandler.core.PathNotFoundException;
 import net.sanyal.fshandler.core.config.LocalFileSystemConfig;
+import net.sanyal.fshandler.core.io.Abortable;
+import net.sanyal.fshandler.core.io.BoundedInputStream;
+import net.sanyal.fshandler.core.model.FileListPage;
 import net.sanyal.fshandler.core.model.FileMetadata;
+import net.sanyal.fshandler.core.model.FileQuery;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.FileSystemUtils;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @Slf4j
-public class LocalFileSystem implements FileSystem {
+public class LocalFileSystem implements FileSystem, AutoCloseable {
+    /** Directory below the base path where uploads are written before they replace their target */
+    static final String STAGING_DIRECTORY_NAME = ".fs-handler-uploads";
+    private static final Comparator<Path> BY_NAME = Comparator.comparing(path -> path.getFileName().toString());
+
     private final Path basePath;
+    private final Path stagingDirectory;
+    private final ForkJoinPool listPool;
+    private final ParallelTreeWalker parallelWalker;
+    private final LocalDirectoryCache directoryCache;
+    private final ForkJoinPool deletePool;
+    private final ParallelTreeDeleter treeDeleter;
 
     public LocalFileSystem(LocalFileSystemConfig config) {
         if (config == null || config.getBasePath() == null) {
             throw new IllegalArgumentException("Config and basePath must not be null");
         }
+        if (config.getListParallelism() < 1) {
+            throw new IllegalArgumentException("List parallelism must be at least 1");
+        }
+        if (config.getDeleteParallelism() < 1) {
+            throw new IllegalArgumentException("Delete parallelism must be at least 1");
+        }
+        if (config.getListCacheMaxDirectories() < 0) {
+            throw new IllegalArgumentException("List cache size must not be negative");
+        }
         this.basePath = Paths.get(config.getBasePath()).toAbsolutePath().normalize();
+        this.stagingDirectory = basePath.resolve(STAGING_DIRECTORY_NAME);
         if (!initializeBasePath()) {
             throw new IllegalStateException("Failed to initialize local file system");
         }
+        if (config.getListParallelism() > 1) {
+            this.listPool = new ForkJoinPool(config.getListParallelism());
+            this.parallelWalker = new ParallelTreeWalker(listPool, this::toMetadata, this::isVisible,
+                config.isDeterministicListOrder());
+        } else {
+            this.listPool = null;
+            this.parallelWalker = null;
+        }
+        if (config.getDeleteParallelism() > 1) {
+            this.deletePool = new ForkJoinPool(config.getDeleteParallelism());
+            this.treeDeleter = new ParallelTreeDeleter(deletePool, basePath);
+        } else {
+            this.deletePool = null;
+            this.treeDeleter = null;
+        }
+        this.directoryCache = config.getListCacheMaxDirectories() > 0
+            ? createDirectoryCache(config.getListCacheMaxDirectories())
+            : null;
+    }
+
+    private LocalDirectoryCache createDirectoryCache(int maxDirectories) {
+        try {
+            return new LocalDirectoryCache(basePath.getFileSystem(), maxDirectories, this::toMetadata, this::isVisible);
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("Directory listing cache unavailable, listing without it: {}", e.getMessage());
+            return null;
+        }
     }
 
     private boolean initializeBasePath() {
         try {
             Files.createDirectories(basePath);
+            Files.createDirectories(stagingDirectory);
+            sweepStagingDirectory();
             return true;
         } catch (IOException e) {
             log.error("Failed to create base directory: {}", basePath, e);
@@ -38,7 +105,33 @@ public class LocalFileSystem implements FileSystem {
         }
     }
 
-    private Path resolveFullPath(String path) {
+    /**
+     * Deletes uploads left behind by a process that died while writing them. The staging directory
+     * belongs to the one process serving the base path, so nothing in it is in progress yet.
+     */
+    private void sweepStagingDirectory() throws IOException {
+        int swept = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(stagingDirectory, "*.part")) {
+            for (Path stale : stream) {
+                try {
+                    Files.deleteIfExists(stale);
+                    swept++;
+                } catch (IOException e) {
+                    log.warn("Failed to delete stale upload '{}': {}", stale, e.getMessage());
+                }
+            }
+        }
+        if (swept > 0) {
+            log.info("Deleted {} uploads left unfinished in '{}'", swept, stagingDirectory);
+        }
+    }
+
+    /** Whether a traversal reports {@code entry}; the staging directory is internal to this class */
+    private boolean isVisible(Path entry) {
+        return !entry.equals(stagingDirectory);
+    }
+
+    Path resolveFullPath(String path) {
         if (path == null) {
             throw new IllegalArgumentException("Path must not be null");
         }
@@ -50,7 +143,11 @@ public class LocalFileSystem implements FileSystem {
         if (path.contains("..")) {
             throw new IllegalArgumentException("Path traversal not allowed");
         }
-        return basePath.resolve(path).normalize();
+        Path resolved = basePath.resolve(path).normalize();
+        if (resolved.startsWith(stagingDirectory)) {
+            throw new IllegalArgumentException("Path is reserved: " + path);
+        }
+        return resolved;
     }
 
     @Override
@@ -62,6 +159,7 @@ public class LocalFileSystem implements FileSystem {
             Path filePath = resolveFullPath(path);
             Files.createDirectories(filePath.getParent());
             Files.createFile(filePath);
+            invalidateListings(filePath);
             return getMetadata(path);
         } catch (IOException e) {
             log.error("Failed to create file at path '{}': {}", path, e.getMessage(), e);
@@ -77,6 +175,7 @@ public class LocalFileSystem implements FileSystem {
         try {
             Path dirPath = resolveFullPath(path);
             Files.createDirectories(dirPath);
+            invalidateListings(dirPath);
             return getMetadata(path);
         } catch (IOException e) {
             log.error("Failed to create directory at path '{}': {}", path, e.getMessage(), e);
@@ -92,12 +191,51 @@ public class LocalFileSystem implements FileSystem {
         try {
             Path filePath = resolveFullPath(path);
             return new BufferedInputStream(Files.newInputStream(filePath));
+        } catch (NoSuchFileException e) {
+            log.debug("File not found at path '{}'", path);
+            throw new PathNotFoundException(path, e);
         } catch (IOException e) {
             log.error("Failed to read file at path '{}': {}", path, e.getMessage(), e);
             throw new RuntimeException("Failed to read file: " + e.getMessage(), e);
         }
     }
 
+    @Override
+    public InputStream readFile(String path, long offset, long length) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path must not be null when reading a file");
+        }
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Offset and length must not be negative");
+        }
+        try {
+            Path filePath = resolveFullPath(path);
+            FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ);
+            try {
+                channel.position(offset);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            return new BufferedInputStream(new BoundedInputStream(Channels.newInputStream(channel), length));
+        } catch (NoSuchFileException e) {
+            log.debug("File not found at path '{}'", path);
+            throw new PathNotFoundException(path, e);
+        } catch (IOException e) {
+            log.error("Failed to read range of file at path '{}': {}", path, e.getMessage(), e);
+            throw new RuntimeException("Failed to read file: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Optional<Path> getLocalPath(String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path must not be null when resolving a local path");
+        }
+        Path filePath = resolveFullPath(path);
+        return Files.isRegularFile(filePath) ? Optional.of(filePath) : Optional.empty();
+    }
+
     @Override
     public OutputStream writeFile(String path) {
         if (path == null) {
@@ -106,13 +244,23 @@ public class LocalFileSystem implements FileSystem {
         try {
             Path filePath = resolveFullPath(path);
             Files.createDirectories(filePath.getParent());
-            return new BufferedOutputStream(Files.newOutputStream(filePath));
+            if (Files.isDirectory(filePath)) {
+                throw new FileSystemException(filePath.toString(), null, "Is a directory");
+            }
+            return new ReplacingOutputStream(filePath);
         } catch (IOException e) {
             log.error("Failed to write to file at path '{}': {}", path, e.getMessage(), e);
             throw new RuntimeException("Failed to write to file: " + e.getMessage(), e);
         }
     }
 
+    @Override
+    public OutputStream writeFile(String path, long expectedSize) {
+        // NIO offers no portable preallocation and the file system allocates extents as the
+        // data arrives, so the size hint is not needed locally
+        return writeFile(path);
+    }
+
     @Override
     public OutputStream appendFile(String path) {
         if (path == null) {
@@ -121,24 +269,153 @@ public class LocalFileSystem implements FileSystem {
         try {
             Path filePath = resolveFullPath(path);
             Files.createDirectories(filePath.getParent());
-            return new BufferedOutputStream(Files.newOutputStream(filePath, StandardOpenOption.APPEND, StandardOpenOption.CREATE));
+            return openForWrite(filePath, StandardOpenOption.APPEND, StandardOpenOption.CREATE);
         } catch (IOException e) {
             log.error("Failed to append to file at path '{}': {}", path, e.getMessage(), e);
             throw new RuntimeException("Failed to append to file: " + e.getMessage(), e);
         }
     }
 
+    private OutputStream openForWrite(Path filePath, OpenOption... options) throws IOException {
+        OutputStream out = Files.newOutputStream(filePath, options);
+        invalidateListings(filePath);
+        if (directoryCache == null) {
+            return new BufferedOutputStream(out);
+        }
+        // The final size only becomes visible once the buffered data is flushed on close
+        return new BufferedOutputStream(out) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    invalidateListings(filePath);
+                }
+            }
+        };
+    }
+
+    /**
+     * Writes to a file in the staging directory and renames it over the target on close, so the
+     * target only ever holds complete content. Being below the base path, the staging directory is
+     * on the same file system as the target unless another one is mounted in between, which keeps the
+     * rename atomic. Listings skip it, so partial uploads never show.
+     * A replaced target keeps its POSIX permissions. Aborting deletes the staged file instead.
+     */
+    private final class ReplacingOutputStream extends FilterOutputStream implements Abortable {
+        private final Path filePath;
+        private final Path tempPath;
+        private boolean closed;
+
+        ReplacingOutputStream(Path filePath) throws IOException {
+            this(filePath, Files.createDirectories(stagingDirectory)
+                .resolve(Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".part"));
+        }
+
+        private ReplacingOutputStream(Path filePath, Path tempPath) throws IOException {
+            super(new BufferedOutputStream(Files.newOutputStream(tempPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)));
+            this.filePath = filePath;
+            this.tempPath = tempPath;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!closed) {
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                out.close();
+                copyPosixAttributes(filePath, tempPath);
+                try {
+                    Files.move(tempPath, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    // The target is on another mount below the base path; the copy is not atomic
+                    log.debug("Replacing '{}' without an atomic rename: {}", filePath, e.getMessage());
+                    Files.move(tempPath, filePath, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException | RuntimeException e) {
+                deleteTempFile(e);
+                throw e;
+            } finally {
+                invalidateListings(filePath);
+            }
+        }
+
+        @Override
+        public void abort() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                out.close();
+            } finally {
+                Files.deleteIfExists(tempPath);
+            }
+        }
+
+        /** Gives the staged file the permissions, and where allowed the owner, of the file it replaces */
+        private void copyPosixAttributes(Path target, Path staged) throws IOException {
+            PosixFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(target, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (NoSuchFileException | UnsupportedOperationException e) {
+                // A new file, or a file system without POSIX attributes
+                return;
+            }
+            PosixFileAttributeView view = Files.getFileAttributeView(staged, PosixFileAttributeView.class);
+            view.setPermissions(attrs.permissions());
+            try {
+                view.setGroup(attrs.group());
+                view.setOwner(attrs.owner());
+            } catch (IOException e) {
+                // Only a privileged process may hand a file to another user
+                log.debug("Kept owner of replaced file '{}': {}", target, e.getMessage());
+            }
+        }
+
+        private void deleteTempFile(Exception cause) {
+            try {
+                Files.deleteIfExists(tempPath);
+            } catch (IOException e) {
+                cause.addSuppressed(e);
+            }
+        }
+    }
+
     @Override
     public FileMetadata move(String sourcePath, String destinationPath) {
         if (sourcePath == null || destinationPath == null) {
             throw new IllegalArgumentException("Source and destination paths must not be null when moving a file");
         }
+        Path source = resolveFullPath(sourcePath);
+        Path destination = resolveFullPath(destinationPath);
         try {
-            Path source = resolveFullPath(sourcePath);
-            Path destination = resolveFullPath(destinationPath);
             Files.createDirectories(destination.getParent());
             Files.move(source, destination, StandardCopyOption.REPLACE_EXISTING);
+            invalidateListings(source);
+            invalidateListings(destination);
             return getMetadata(destinationPath);
+        } catch (NoSuchFileException e) {
+            if (!source.toString().equals(e.getFile())) {
+                log.error("Failed to move file from '{}' to '{}': {}", sourcePath, destinationPath, e.getMessage(), e);
+                throw new RuntimeException("Failed to move file: " + e.getMessage(), e);
+            }
+            log.debug("Source path '{}' of move not found", sourcePath);
+            throw new PathNotFoundException(sourcePath, e);
         } catch (IOException e) {
             log.error("Failed to move file from '{}' to '{}': {}", sourcePath, destinationPath, e.getMessage(), e);
             throw new RuntimeException("Failed to move file: " + e.getMessage(), e);
@@ -154,22 +431,112 @@ public class LocalFileSystem implements FileSystem {
         return move(path, parentPath + newName);
     }
 
+    @Override
+    public FileMetadata copy(String sourcePath, String destinationPath) {
+        if (sourcePath == null || destinationPath == null) {
+            throw new IllegalArgumentException("Source and destination paths must not be null when copying a file");
+        }
+        Path source = resolveFullPath(sourcePath);
+        Path destination = resolveFullPath(destinationPath);
+        if (source.equals(destination)) {
+            // Opening the destination would truncate the source before a single byte is copied
+            throw new IllegalArgumentException("Source and destination paths must differ when copying a file");
+        }
+        if (Files.isDirectory(source)) {
+            throw new IllegalArgumentException("Source path must be a file when copying: " + sourcePath);
+        }
+        try {
+            Files.createDirectories(destination.getParent());
+            copyContent(source, destination);
+            return getMetadata(destinationPath);
+        } catch (NoSuchFileException e) {
+            if (!source.toString().equals(e.getFile())) {
+                log.error("Failed to copy file from '{}' to '{}': {}", sourcePath, destinationPath, e.getMessage(), e);
+                throw new RuntimeException("Failed to copy file: " + e.getMessage(), e);
+            }
+            log.debug("Source path '{}' of copy not found", sourcePath);
+            throw new PathNotFoundException(sourcePath, e);
+        } catch (IOException e) {
+            log.error("Failed to copy file from '{}' to '{}': {}", sourcePath, destinationPath, e.getMessage(), e);
+            throw new RuntimeException("Failed to copy file: " + e.getMessage(), e);
+        } finally {
+            invalidateListings(destination);
+        }
+    }
+
+    /**
+     * Copies a file without its content passing through the heap. On Linux, transferTo between two
+     * file channels becomes copy_file_range, which Btrfs and XFS serve by sharing extents (a reflink)
+     * and other file systems by copying inside the kernel. Files.copy finishes the job should the
+     * channel stop making progress.
+     */
+    private static void copyContent(Path source, Path destination) throws IOException {
+        long copied = 0;
+        long size;
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(destination, StandardOpenOption.WRITE,
+                 StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            size = in.size();
+            while (copied < size) {
+                long transferred = in.transferTo(copied, size - copied, out);
+                if (transferred <= 0) {
+                    break;
+                }
+                copied += transferred;
+            }
+        }
+        if (copied < size) {
+            log.debug("Channel transfer of '{}' stopped after {} of {} bytes, falling back to Files.copy", source, copied, size);
+            Files.copy(source, destination, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
     @Override
     public void delete(String path) {
         if (path == null) {
             throw new IllegalArgumentException("Path must not be null when deleting a file or directory");
         }
+        Path filePath = resolveFullPath(path);
         try {
-            Path filePath = resolveFullPath(path);
-            if (Files.isDirectory(filePath)) {
-                FileSystemUtils.deleteRecursively(filePath);
+            if (Files.isDirectory(filePath, LinkOption.NOFOLLOW_LINKS)) {
+                if (treeDeleter != null) {
+                    treeDeleter.delete(filePath);
+                } else {
+                    FileSystemUtils.deleteRecursively(filePath);
+                }
             } else {
                 Files.delete(filePath);
             }
+        } catch (PartialDeleteException e) {
+            log.error("Failed to delete {} paths below '{}'", e.getFailures().size(), path);
+            throw e;
+        } catch (NoSuchFileException e) {
+            log.debug("Nothing to delete at path '{}'", path);
+            throw new PathNotFoundException(path, e);
         } catch (IOException e) {
             log.error("Failed to delete path '{}': {}", path, e.getMessage(), e);
             throw new RuntimeException("Failed to delete: " + e.getMessage(), e);
+        } finally {
+            // A partial delete changes listings just as much as a complete one
+            invalidateListings(filePath);
+        }
+    }
+
+    @Override
+    public Map<String, RuntimeException> deleteAll(List<String> paths) {
+        if (paths == null) {
+            throw new IllegalArgumentException("Paths must not be null when deleting files or directories");
+        }
+        // Local deletes cost no round trip, so there is nothing to gain from grouping them
+        Map<String, RuntimeException> failures = new LinkedHashMap<>();
+        for (String path : paths) {
+            try {
+                delete(path);
+            } catch (RuntimeException e) {
+                failures.put(path, e);
+            }
         }
+        return failures;
     }
 
     @Override
@@ -187,24 +554,14 @@ public class LocalFileSystem implements FileSystem {
                 log.error("Path '{}' exists but is not a directory", path);
                 throw new IllegalArgumentException("Path exists but is not a directory: " + path);
             }
-            try (Stream<Path> stream = Files.list(dirPath)) {
-                return stream
-                    .map(p -> {
-                        try {
-                            // Get the relative path from the base directory
-                            String relativePath = path.isEmpty() ? 
-                                p.getFileName().toString() : 
-                                path + "/" + p.getFileName().toString();
-                            return getMetadata(relativePath);
-                        } catch (Exception e) {
-                            log.warn("Failed to get metadata for path '{}': {}", p, e.getMessage());
-                            return null;
-                        }
-                    })
-                    .filter(java.util.Objects::nonNull)
-                    .filter(filter != null ? filter : metadata -> true)
+            if (directoryCache != null) {
+                Predicate<FileMetadata> effectiveFilter = filter != null ? filter : metadata -> true;
+                return directoryCache.list(dirPath, () -> walk(dirPath, 1, null)).stream()
+                    .filter(effectiveFilter)
+                    .limit(FileQuery.maxResultsOf(filter))
                     .collect(Collectors.toList());
             }
+            return walk(dirPath, 1, filter);
         } catch (IOException e) {
             log.error("Failed to list directory at path '{}': {}", path, e.getMessage(), e);
             throw new RuntimeException("Failed to list directory: " + e.getMessage(), e);
@@ -226,29 +583,340 @@ public class LocalFileSystem implements FileSystem {
                 log.error("Path '{}' exists but is not a directory", path);
                 throw new IllegalArgumentException("Path exists but is not a directory: " + path);
             }
-            try (Stream<Path> stream = Files.walk(dirPath)) {
-                return stream
-                    .filter(p -> !p.equals(dirPath))
-                    .map(p -> {
-                        try {
-                            // Get the relative path from the base directory
-                            String relativePath = path + "/" + dirPath.relativize(p).toString();
-                            return getMetadata(relativePath);
-                        } catch (Exception e) {
-                            log.warn("Failed to get metadata for path '{}': {}", p, e.getMessage());
-                            return null;
-                        }
-                    })
-                    .filter(java.util.Objects::nonNull)
-                    .filter(filter != null ? filter : metadata -> true)
-                    .collect(Collectors.toList());
+            if (parallelWalker != null) {
+                List<FileMetadata> result = parallelWalker.walk(dirPath, filter);
+                long maxResults = FileQuery.maxResultsOf(filter);
+                return result.size() > maxResults ? result.subList(0, (int) maxResults) : result;
             }
+            return walk(dirPath, Integer.MAX_VALUE, filter);
         } catch (IOException e) {
             log.error("Failed to list directory recursively at path '{}': {}", path, e.getMessage(), e);
             throw new RuntimeException("Failed to list directory recursively: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Walks the tree below {@code dirPath} in pre-order, building metadata from the attributes the
+     * walker has already read instead of stat-ing every entry a second time.
+     */
+    private List<FileMetadata> walk(Path dirPath, int maxDepth, Predicate<FileMetadata> filter) throws IOException {
+        Predicate<FileMetadata> effectiveFilter = filter != null ? filter : metadata -> true;
+        long maxResults = FileQuery.maxResultsOf(filter);
+        List<FileMetadata> result = new ArrayList<>();
+        Files.walkFileTree(dirPath, java.util.EnumSet.noneOf(FileVisitOption.class), maxDepth, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(dirPath)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (!isVisible(dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                FileMetadata metadata = accept(dir, attrs);
+                if (result.size() >= maxResults) {
+                    return FileVisitResult.TERMINATE;
+                }
+                return FileQuery.excludesSubtree(filter, metadata.getPath())
+                    ? FileVisitResult.SKIP_SUBTREE
+                    : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                // With a depth limit, directories at the limit are reported here as well
+                if (isVisible(file)) {
+                    accept(file, attrs);
+                }
+                return result.size() >= maxResults ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                if (file.equals(dirPath)) {
+                    throw e;
+                }
+                log.warn("Failed to get metadata for path '{}': {}", file, e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                if (e != null) {
+                    log.warn("Failed to list directory '{}': {}", dir, e.getMessage());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            private FileMetadata accept(Path entry, BasicFileAttributes attrs) {
+                FileMetadata metadata = toMetadata(entry, attrs);
+                if (effectiveFilter.test(metadata)) {
+                    result.add(metadata);
+                }
+                return metadata;
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public Stream<FileMetadata> listStream(String path, boolean recursive, Predicate<FileMetadata> filter) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path must not be null when listing directory contents");
+        }
+        Path dirPath = resolveFullPath(path);
+        if (!Files.exists(dirPath)) {
+            log.warn("Directory does not exist at path: {}", path);
+            return Stream.empty();
+        }
+        if (!Files.isDirectory(dirPath)) {
+            log.error("Path '{}' exists but is not a directory", path);
+            throw new IllegalArgumentException("Path exists but is not a directory: " + path);
+        }
+        try {
+            DirectoryTreeIterator iterator = new DirectoryTreeIterator(dirPath, recursive, filter);
+            return java.util.stream.StreamSupport.stream(
+                    java.util.Spliterators.spliteratorUnknownSize(iterator, java.util.Spliterator.ORDERED | java.util.Spliterator.NONNULL),
+                    false)
+                .onClose(iterator::close)
+                .filter(filter != null ? filter : metadata -> true)
+                .limit(FileQuery.maxResultsOf(filter));
+        } catch (IOException e) {
+            log.error("Failed to stream directory at path '{}': {}", path, e.getMessage(), e);
+            throw new RuntimeException("Failed to list directory: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Lazily walks a directory tree in pre-order, keeping one open directory stream per level of the
+     * current branch. Unlike Files.walk, which stats every entry only to throw the attributes away,
+     * each entry is stat-ed exactly once and the attributes become its metadata.
+     */
+    private final class DirectoryTreeIterator implements java.util.Iterator<FileMetadata>, Closeable {
+        private final java.util.Deque<DirectoryStream<Path>> streams = new java.util.ArrayDeque<>();
+        private final java.util.Deque<java.util.Iterator<Path>> iterators = new java.util.ArrayDeque<>();
+        private final boolean recursive;
+        private final Predicate<FileMetadata> filter;
+        private FileMetadata next;
+
+        DirectoryTreeIterator(Path root, boolean recursive, Predicate<FileMetadata> filter) throws IOException {
+            this.recursive = recursive;
+            this.filter = filter;
+            open(root);
+        }
+
+        private void open(Path dir) throws IOException {
+            DirectoryStream<Path> stream = Files.newDirectoryStream(dir, LocalFileSystem.this::isVisible);
+            streams.push(stream);
+            iterators.push(stream.iterator());
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !iterators.isEmpty()) {
+                java.util.Iterator<Path> current = iterators.peek();
+                if (!current.hasNext()) {
+                    iterators.pop();
+                    closeQuietly(streams.pop());
+                    continue;
+                }
+                Path entry = current.next();
+                BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException e) {
+                    log.warn("Failed to get metadata for path '{}': {}", entry, e.getMessage());
+                    continue;
+                }
+                next = toMetadata(entry, attrs);
+                if (recursive && attrs.isDirectory() && !FileQuery.excludesSubtree(filter, next.getPath())) {
+                    try {
+                        open(entry);
+                    } catch (IOException e) {
+                        log.warn("Failed to list directory '{}': {}", entry, e.getMessage());
+                    }
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public FileMetadata next() {
+            if (!hasNext()) {
+                throw new java.util.NoSuchElementException();
+            }
+            FileMetadata result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void close() {
+            iterators.clear();
+            while (!streams.isEmpty()) {
+                closeQuietly(streams.pop());
+            }
+        }
+
+        private void closeQuietly(DirectoryStream<Path> stream) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                log.warn("Failed to close directory stream: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public FileListPage listPage(String path, boolean recursive, Predicate<FileMetadata> filter, String cursor, int limit) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path must not be null when listing directory contents");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        Path dirPath = resolveFullPath(path);
+        if (!Files.exists(dirPath)) {
+            log.warn("Directory does not exist at path: {}", path);
+            return FileListPage.builder().items(java.util.Collections.emptyList()).build();
+        }
+        if (!Files.isDirectory(dirPath)) {
+            log.error("Path '{}' exists but is not a directory", path);
+            throw new IllegalArgumentException("Path exists but is not a directory: " + path);
+        }
+        // Entries are ordered by path segments in pre-order, and the cursor is the path of the last
+        // entry returned, so a page resumes right after it without any server-side state
+        String[] cursorSegments = cursor == null || cursor.isEmpty() ? null : cursor.split("/");
+        Predicate<FileMetadata> effectiveFilter = filter != null ? filter : metadata -> true;
+        List<FileMetadata> items = new ArrayList<>(limit + 1);
+        try {
+            collectPage(dirPath, recursive, effectiveFilter, cursorSegments, limit + 1, items);
+        } catch (IOException e) {
+            log.error("Failed to list page of directory at path '{}': {}", path, e.getMessage(), e);
+            throw new RuntimeException("Failed to list directory: " + e.getMessage(), e);
+        }
+        String nextCursor = null;
+        if (items.size() > limit) {
+            items.remove(limit);
+            nextCursor = items.get(limit - 1).getPath();
+        }
+        return FileListPage.builder().items(items).nextCursor(nextCursor).build();
+    }
+
+    /**
+     * Appends entries after the cursor to {@code items} in pre-order until {@code wanted} entries are
+     * collected. Returns false once enough entries have been found.
+     * <p>
+     * Only as many children as could still be returned are taken from each directory read, so a page
+     * sorts at most {@code wanted} names instead of the whole directory. When the filter rejects enough
+     * of them, the directory is read again for the names after the last one taken.
+     */
+    private boolean collectPage(Path dir, boolean recursive, Predicate<FileMetadata> filter,
+                                String[] cursorSegments, int wanted, List<FileMetadata> items) throws IOException {
+        String from = cursorNameIn(dir, cursorSegments);
+        String after = null;
+        while (true) {
+            int batch = wanted - items.size();
+            List<Path> children = firstChildren(dir, from, after, batch);
+            if (!collectChildren(children, recursive, filter, cursorSegments, wanted, items)) {
+                return false;
+            }
+            if (children.size() < batch) {
+                return true;
+            }
+            after = children.get(children.size() - 1).getFileName().toString();
+        }
+    }
+
+    /**
+     * The cursor's name among the children of {@code dir} when the cursor lies below it; names before
+     * it, and their subtrees, were returned on earlier pages
+     */
+    private String cursorNameIn(Path dir, String[] cursorSegments) {
+        if (cursorSegments == null) {
+            return null;
+        }
+        String[] dirSegments = dir.equals(basePath) ? new String[0] : basePath.relativize(dir).toString().split("/");
+        if (dirSegments.length >= cursorSegments.length) {
+            return null;
+        }
+        for (int i = 0; i < dirSegments.length; i++) {
+            if (!dirSegments[i].equals(cursorSegments[i])) {
+                return null;
+            }
+        }
+        return cursorSegments[dirSegments.length];
+    }
+
+    /**
+     * The first {@code count} visible children of {@code dir} by name, from {@code from} on and after
+     * {@code after}, selected with a bounded heap while the directory is read
+     */
+    private List<Path> firstChildren(Path dir, String from, String after, int count) throws IOException {
+        PriorityQueue<Path> selected = new PriorityQueue<>(count + 1, BY_NAME.reversed());
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, this::isVisible)) {
+            for (Path child : stream) {
+                String name = child.getFileName().toString();
+                if (from != null && name.compareTo(from) < 0 || after != null && name.compareTo(after) <= 0) {
+                    continue;
+                }
+                if (selected.size() < count) {
+                    selected.add(child);
+                } else if (BY_NAME.compare(child, selected.peek()) < 0) {
+                    selected.poll();
+                    selected.add(child);
+                }
+            }
+        }
+        List<Path> children = new ArrayList<>(selected);
+        children.sort(BY_NAME);
+        return children;
+    }
+
+    private boolean collectChildren(List<Path> children, boolean recursive, Predicate<FileMetadata> filter,
+                                    String[] cursorSegments, int wanted, List<FileMetadata> items) throws IOException {
+        for (Path child : children) {
+            String relativePath = basePath.relativize(child).toString();
+            int order = cursorSegments == null ? 1 : compareToCursor(relativePath.split("/"), cursorSegments);
+            if (order < 0 && !isAncestorOfCursor(relativePath, cursorSegments)) {
+                // The entry and its whole subtree were returned on earlier pages
+                continue;
+            }
+            FileMetadata metadata;
+            try {
+                metadata = toMetadata(child, Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS));
+            } catch (IOException e) {
+                log.warn("Failed to get metadata for path '{}': {}", child, e.getMessage());
+                continue;
+            }
+            if (order > 0 && filter.test(metadata)) {
+                items.add(metadata);
+                if (items.size() >= wanted) {
+                    return false;
+                }
+            }
+            if (recursive && metadata.isDirectory() && !FileQuery.excludesSubtree(filter, metadata.getPath())
+                && !collectPage(child, true, filter, cursorSegments, wanted, items)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int compareToCursor(String[] segments, String[] cursorSegments) {
+        int common = Math.min(segments.length, cursorSegments.length);
+        for (int i = 0; i < common; i++) {
+            int order = segments[i].compareTo(cursorSegments[i]);
+            if (order != 0) {
+                return order;
+            }
+        }
+        return Integer.compare(segments.length, cursorSegments.length);
+    }
+
+    private static boolean isAncestorOfCursor(String relativePath, String[] cursorSegments) {
+        return String.join("/", cursorSegments).startsWith(relativePath + "/");
+    }
+
     @Override
     public FileMetadata getMetadata(String path) {
         if (path == null) {
@@ -257,23 +925,62 @@ public class LocalFileSystem implements FileSystem {
         try {
             Path filePath = resolveFullPath(path);
             BasicFileAttributes attrs = Files.readAttributes(filePath, BasicFileAttributes.class);
-            String relativePath = basePath.relativize(filePath).toString();
-            return FileMetadata.builder()
-                .name(filePath.getFileName().toString())
-                .path(relativePath)
-                .size(attrs.isDirectory() ? -1 : attrs.size())
-                .creationTime(attrs.creationTime().toInstant())
-                .lastModifiedTime(attrs.lastModifiedTime().toInstant())
-                .isDirectory(attrs.isDirectory())
-                .build();
+            return toMetadata(filePath, attrs);
+        } catch (NoSuchFileException e) {
+            log.debug("Nothing found at path '{}'", path);
+            throw new PathNotFoundException(path, e);
         } catch (IOException e) {
             log.error("Failed to get metadata for path '{}': {}", path, e.getMessage(), e);
             throw new RuntimeException("Failed to get metadata: " + e.getMessage(), e);
         }
     }
 
+    private FileMetadata toMetadata(Path fullPath, BasicFileAttributes attrs) {
+        return FileMetadata.builder()
+            .name(fullPath.getFileName().toString())
+            .path(basePath.relativize(fullPath).toString())
+            .size(attrs.isDirectory() ? -1 : attrs.size())
+            .creationTime(attrs.creationTime().toInstant())
+            .lastModifiedTime(attrs.lastModifiedTime().toInstant())
+            .isDirectory(attrs.isDirectory())
+            .build();
+    }
+
+    /**
+     * Drops cached listings that a change to {@code fullPath} affects: its own subtree and every
+     * directory above it, whose entries may have been created or resized. Watch events would patch
+     * them too, but only asynchronously, and callers expect to list what they have just written.
+     */
+    private void invalidateListings(Path fullPath) {
+        if (directoryCache == null) {
+            return;
+        }
+        directoryCache.invalidateTree(fullPath);
+        for (Path dir = fullPath.getParent(); dir != null && dir.startsWith(basePath); dir = dir.getParent()) {
+            directoryCache.invalidate(dir);
+        }
+    }
+
+    /** Number of directories whose listings are currently cached */
+    int getDirectoryCacheSize() {
+        return directoryCache != null ? directoryCache.size() : 0;
+    }
+
     @Override
     public boolean isHealthy() {
         return Files.isDirectory(basePath) && Files.isWritable(basePath) && Files.isReadable(basePath);
     }
+
+    @Override
+    public void close() {
+        if (listPool != null) {
+            listPool.shutdown();
+        }
+        if (deletePool != null) {
+            deletePool.shutdown();
+        }
+        if (directoryCache != null) {
+            directoryCache.close();
+        }
+    }
 }
@@ -0,0 +1,110 @@
+package net.sanyal.fshandler.local;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sanyal.fshandler.core.PartialDeleteException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deletes a directory tree on a {@link ForkJoinPool}, forking one task per subdirectory so that the
+ * unlink calls of different directories overlap. A directory is removed once its subtree is empty;
+ * symbolic links are deleted as themselves without being followed. Paths that cannot be deleted are
+ * collected and reported together, and keep their ancestors in place.
+ */
+@Slf4j
+final class ParallelTreeDeleter {
+    private final ForkJoinPool pool;
+    private final Path basePath;
+
+    ParallelTreeDeleter(ForkJoinPool pool, Path basePath) {
+        this.pool = pool;
+        this.basePath = basePath;
+    }
+
+    /**
+     * Deletes {@code root} and everything below it.
+     * @throws PartialDeleteException if some paths could not be deleted
+     */
+    void delete(Path root) throws IOException {
+        Map<String, String> failures = new ConcurrentHashMap<>();
+        LongAdder deleted = new LongAdder();
+        try {
+            pool.invoke(new DeleteTask(root, true, failures, deleted));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (!failures.isEmpty()) {
+            throw new PartialDeleteException(basePath.relativize(root).toString(), deleted.sum(), failures);
+        }
+    }
+
+    private final class DeleteTask extends RecursiveTask<Boolean> {
+        private final Path dir;
+        private final boolean root;
+        private final Map<String, String> failures;
+        private final LongAdder deleted;
+
+        DeleteTask(Path dir, boolean root, Map<String, String> failures, LongAdder deleted) {
+            this.dir = dir;
+            this.root = root;
+            this.failures = failures;
+            this.deleted = deleted;
+        }
+
+        /** Returns whether the directory itself was deleted */
+        @Override
+        protected Boolean compute() {
+            List<DeleteTask> subtasks = new ArrayList<>();
+            boolean complete = true;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path child : stream) {
+                    if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                        DeleteTask subtask = new DeleteTask(child, false, failures, deleted);
+                        subtask.fork();
+                        subtasks.add(subtask);
+                    } else {
+                        complete &= deletePath(child);
+                    }
+                }
+            } catch (IOException e) {
+                if (root) {
+                    throw new UncheckedIOException(e);
+                }
+                recordFailure(dir, e);
+                complete = false;
+            }
+            for (DeleteTask subtask : subtasks) {
+                complete &= subtask.join();
+            }
+            return complete && deletePath(dir);
+        }
+
+        private boolean deletePath(Path path) {
+            try {
+                Files.delete(path);
+                deleted.increment();
+                return true;
+            } catch (IOException e) {
+                recordFailure(path, e);
+                return false;
+            }
+        }
+
+        private void recordFailure(Path path, IOException e) {
+            log.warn("Failed to delete '{}': {}", path, e.getMessage());
+            failures.put(basePath.relativize(path).toString(), e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package net.sanyal.fshandler.local;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sanyal.fshandler.core.model.FileMetadata;
+import net.sanyal.fshandler.core.model.FileQuery;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * Walks a directory tree on a {@link ForkJoinPool}, forking one task per subdirectory so that
+ * latency-bound directory reads overlap. Like the sequential walker, the filter only prunes traversal
+ * when it is a {@link FileQuery} ruling out a subtree, and symbolic links are reported as themselves
+ * without being followed.
+ */
+@Slf4j
+final class ParallelTreeWalker {
+    private static final Comparator<Entry> BY_NAME = Comparator.comparing(entry -> entry.path.getFileName().toString());
+
+    private final ForkJoinPool pool;
+    private final BiFunction<Path, BasicFileAttributes, FileMetadata> metadataFactory;
+    private final Predicate<Path> visible;
+    private final boolean deterministic;
+
+    ParallelTreeWalker(ForkJoinPool pool, BiFunction<Path, BasicFileAttributes, FileMetadata> metadataFactory,
+                       Predicate<Path> visible, boolean deterministic) {
+        this.pool = pool;
+        this.metadataFactory = metadataFactory;
+        this.visible = visible;
+        this.deterministic = deterministic;
+    }
+
+    List<FileMetadata> walk(Path root, Predicate<FileMetadata> filter) throws IOException {
+        Predicate<FileMetadata> effectiveFilter = filter != null ? filter : metadata -> true;
+        try {
+            return pool.invoke(new DirectoryTask(root, effectiveFilter, true));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private record Entry(Path path, FileMetadata metadata, boolean directory) {
+    }
+
+    private final class DirectoryTask extends RecursiveTask<List<FileMetadata>> {
+        private final Path dir;
+        private final Predicate<FileMetadata> filter;
+        private final boolean root;
+
+        DirectoryTask(Path dir, Predicate<FileMetadata> filter, boolean root) {
+            this.dir = dir;
+            this.filter = filter;
+            this.root = root;
+        }
+
+        @Override
+        protected List<FileMetadata> compute() {
+            List<Entry> entries;
+            try {
+                entries = readEntries();
+            } catch (IOException e) {
+                if (root) {
+                    throw new UncheckedIOException(e);
+                }
+                log.warn("Failed to list directory '{}': {}", dir, e.getMessage());
+                return Collections.emptyList();
+            }
+            if (deterministic) {
+                entries.sort(BY_NAME);
+            }
+
+            // Fork every subdirectory before joining any, remembering where its subtree belongs
+            List<FileMetadata> result = new ArrayList<>();
+            List<DirectoryTask> subtasks = new ArrayList<>();
+            List<Integer> positions = new ArrayList<>();
+            for (Entry entry : entries) {
+                if (filter.test(entry.metadata)) {
+                    result.add(entry.metadata);
+                }
+                if (entry.directory && !FileQuery.excludesSubtree(filter, entry.metadata.getPath())) {
+                    DirectoryTask subtask = new DirectoryTask(entry.path, filter, false);
+                    subtask.fork();
+                    subtasks.add(subtask);
+                    positions.add(result.size());
+                }
+            }
+            if (subtasks.isEmpty()) {
+                return result;
+            }
+            if (!deterministic) {
+                for (DirectoryTask subtask : subtasks) {
+                    result.addAll(subtask.join());
+                }
+                return result;
+            }
+
+            // Splice each subtree in right after its directory to keep pre-order
+            List<FileMetadata> ordered = new ArrayList<>();
+            int copied = 0;
+            for (int i = 0; i < subtasks.size(); i++) {
+                int position = positions.get(i);
+                ordered.addAll(result.subList(copied, position));
+                ordered.addAll(subtasks.get(i).join());
+                copied = position;
+            }
+            ordered.addAll(result.subList(copied, result.size()));
+            return ordered;
+        }
+
+        private List<Entry> readEntries() throws IOException {
+            List<Entry> entries = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, visible::test)) {
+                for (Path child : stream) {
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        log.warn("Failed to get metadata for path '{}': {}", child, e.getMessage());
+                        continue;
+                    }
+                    entries.add(new Entry(child, metadataFactory.apply(child, attrs), attrs.isDirectory()));
+                }
+            }
+            return entries;
+        }
+    }
+}
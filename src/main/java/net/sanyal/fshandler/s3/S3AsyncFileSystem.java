@@ -0,0 +1,266 @@
+package net.sanyal.fshandler.s3;
+
+import net.sanyal.fshandler.core.AsyncFileSystem;
+import net.sanyal.fshandler.core.PartialDeleteException;
+import net.sanyal.fshandler.core.config.S3FileSystemConfig;
+import net.sanyal.fshandler.core.model.FileMetadata;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import javax.annotation.PreDestroy;
+
+/**
+ * {@link AsyncFileSystem} backed by {@link S3AsyncClient}. Requests are multiplexed over the
+ * non-blocking HTTP client, so the number of threads stays flat however many calls are in flight.
+ */
+@Slf4j
+public class S3AsyncFileSystem implements AsyncFileSystem, AutoCloseable {
+    private final S3AsyncClient s3Client;
+    private final String bucketName;
+
+    public S3AsyncFileSystem(S3FileSystemConfig config) {
+        if (config == null || config.getBucketName() == null || config.getRegion() == null
+            || config.getAccessKey() == null || config.getSecretKey() == null) {
+            throw new IllegalArgumentException("All S3 configuration parameters must be provided");
+        }
+        this.bucketName = config.getBucketName();
+        this.s3Client = initializeS3Client(config);
+    }
+
+    S3AsyncFileSystem(S3AsyncClient s3Client, String bucketName) {
+        this.s3Client = s3Client;
+        this.bucketName = bucketName;
+    }
+
+    private S3AsyncClient initializeS3Client(S3FileSystemConfig config) {
+        var httpClient = NettyNioAsyncHttpClient.builder()
+            .maxConcurrency(Math.max(1, config.getMaxConnections()));
+        if (config.getTimeoutMillis() > 0) {
+            httpClient.connectionTimeout(Duration.ofMillis(config.getTimeoutMillis()))
+                .readTimeout(Duration.ofMillis(config.getTimeoutMillis()));
+        }
+        var builder = S3AsyncClient.builder()
+            .region(Region.of(config.getRegion()))
+            .credentialsProvider(StaticCredentialsProvider.create(
+                AwsBasicCredentials.create(config.getAccessKey(), config.getSecretKey())))
+            .httpClientBuilder(httpClient);
+
+        String endpointUrl = System.getProperty("aws.endpoint-url");
+        if (endpointUrl != null && !endpointUrl.isEmpty()) {
+            try {
+                builder.endpointOverride(URI.create(endpointUrl));
+            } catch (IllegalArgumentException e) {
+                log.error("Invalid endpoint URL: {}", endpointUrl, e);
+            }
+        }
+
+        return builder.build();
+    }
+
+    @Override
+    public CompletableFuture<FileMetadata> createFile(String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path must not be null when creating a file");
+        }
+        return logFailure(s3Client.putObject(PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(path)
+                .build(),
+                AsyncRequestBody.empty())
+            .thenCompose(response -> getMetadata(path)), "Failed to create file at path", path);
+    }
+
+    @Override
+    public CompletableFuture<FileMetadata> createDirectory(String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path must not be null when creating a directory");
+        }
+        String dirPath = path.endsWith("/") ? path : path + "/";
+        return logFailure(s3Client.putObject(PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(dirPath)
+                .build(),
+                AsyncRequestBody.empty())
+            .thenCompose(response -> getMetadata(dirPath))
+            .thenApply(metadata -> FileMetadata.builder()
+                .name(path.substring(path.lastIndexOf('/') + 1))
+                .path(path)
+                .size(metadata.getSize())
+                .lastModifiedTime(metadata.getLastModifiedTime())
+                .creationTime(metadata.getCreationTime())
+                .isDirectory(true)
+                .build()), "Failed to create directory at path", dirPath);
+    }
+
+    @Override
+    public CompletableFuture<ByteBuffer> readFile(String path, long offset, int length) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path must not be null when reading a file");
+        }
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Offset and length must not be negative");
+        }
+        if (length == 0) {
+            return CompletableFuture.completedFuture(ByteBuffer.allocate(0));
+        }
+        return logFailure(s3Client.getObject(GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(path)
+                .range("bytes=" + offset + "-" + (offset + length - 1))
+                .build(),
+                AsyncResponseTransformer.toBytes())
+            .thenApply(ResponseBytes::asByteBuffer), "Failed to read file at path", path);
+    }
+
+    @Override
+    public CompletableFuture<FileMetadata> writeFile(String path, ByteBuffer content) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path must not be null when writing to a file");
+        }
+        return logFailure(s3Client.putObject(PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(path)
+                .build(),
+                AsyncRequestBody.fromByteBuffer(content))
+            .thenCompose(response -> getMetadata(path)), "Failed to write to file at path", path);
+    }
+
+    @Override
+    public CompletableFuture<FileMetadata> move(String sourcePath, String destinationPath) {
+        if (sourcePath == null || destinationPath == null) {
+            throw new IllegalArgumentException("Source and destination paths must not be null when moving a file");
+        }
+        return logFailure(s3Client.copyObject(CopyObjectRequest.builder()
+                .sourceBucket(bucketName)
+                .sourceKey(sourcePath)
+                .destinationBucket(bucketName)
+                .destinationKey(destinationPath)
+                .build())
+            .thenCompose(response -> s3Client.deleteObject(DeleteObjectRequest.builder()
+                .bucket(bucketName)
+                .key(sourcePath)
+                .build()))
+            .thenCompose(response -> getMetadata(destinationPath)), "Failed to move file from", sourcePath);
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path must not be null when deleting a file or directory");
+        }
+        if (!path.endsWith("/")) {
+            return logFailure(s3Client.deleteObject(DeleteObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(path)
+                    .build())
+                .thenApply(response -> (Void) null), "Failed to delete path", path);
+        }
+        // Delete every page of keys under the prefix with one DeleteObjects call per page
+        List<CompletableFuture<DeleteObjectsResponse>> deletions = new ArrayList<>();
+        LongAdder requested = new LongAdder();
+        return logFailure(s3Client.listObjectsV2Paginator(ListObjectsV2Request.builder()
+                .bucket(bucketName)
+                .prefix(path)
+                .build())
+            .subscribe(page -> {
+                if (!page.contents().isEmpty()) {
+                    requested.add(page.contents().size());
+                    deletions.add(s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                        .bucket(bucketName)
+                        .delete(Delete.builder()
+                            .objects(page.contents().stream()
+                                .map(object -> ObjectIdentifier.builder().key(object.key()).build())
+                                .toList())
+                            .quiet(true)
+                            .build())
+                        .build()));
+                }
+            })
+            .thenCompose(v -> CompletableFuture.allOf(deletions.toArray(CompletableFuture[]::new)))
+            .thenApply(v -> {
+                // Quiet mode only lists the keys S3 refused to delete, every other key is gone
+                Map<String, String> failures = new LinkedHashMap<>();
+                for (CompletableFuture<DeleteObjectsResponse> deletion : deletions) {
+                    for (S3Error error : deletion.join().errors()) {
+                        failures.put(error.key(), error.code() + ": " + error.message());
+                    }
+                }
+                if (!failures.isEmpty()) {
+                    throw new PartialDeleteException(path, requested.sum() - failures.size(), failures);
+                }
+                return (Void) null;
+            }),
+            "Failed to delete path", path);
+    }
+
+    @Override
+    public CompletableFuture<List<FileMetadata>> list(String path, Predicate<FileMetadata> filter) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path must not be null when listing directory contents");
+        }
+        String prefix = path.isEmpty() ? "" : (path.endsWith("/") ? path : path + "/");
+        List<FileMetadata> result = new ArrayList<>();
+        return logFailure(s3Client.listObjectsV2Paginator(ListObjectsV2Request.builder()
+                .bucket(bucketName)
+                .prefix(prefix)
+                .delimiter("/")
+                .build())
+            .subscribe(page -> S3FileSystem.directoryEntries(page, prefix).stream()
+                .filter(filter != null ? filter : metadata -> true)
+                .forEach(result::add))
+            .thenApply(v -> result), "Failed to list directory at path", path);
+    }
+
+    @Override
+    public CompletableFuture<FileMetadata> getMetadata(String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path must not be null when getting metadata");
+        }
+        return logFailure(s3Client.headObject(HeadObjectRequest.builder()
+                .bucket(bucketName)
+                .key(path)
+                .build())
+            .thenApply(response -> FileMetadata.builder()
+                .name(path.substring(path.lastIndexOf('/') + 1))
+                .path(path)
+                .size(response.contentLength())
+                .lastModifiedTime(response.lastModified())
+                .creationTime(response.lastModified()) // S3 doesn't store creation time
+                .isDirectory(path.endsWith("/"))
+                .build()), "Failed to get metadata for path", path);
+    }
+
+    private <T> CompletableFuture<T> logFailure(CompletableFuture<T> future, String message, String path) {
+        return future.whenComplete((result, e) -> {
+            if (e != null) {
+                log.error("{} '{}': {}", message, path, e.getMessage(), e);
+            }
+        });
+    }
+
+    @PreDestroy
+    @Override
+    public void close() {
+        if (s3Client != null) {
+            s3Client.close();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package net.sanyal.fshandler.s3;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sanyal.fshandler.core.PartialDeleteException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Deletes streams of keys with DeleteObjects, up to 1000 keys per request.
+ * <p>
+ * Keys are batched as the listing produces them, and each full batch is sent on the executor while
+ * the listing carries on, with at most {@code parallelism} requests in flight. When that many are
+ * pending the caller's thread waits, which also pauses the listing. Keys S3 refuses to delete are
+ * collected, not thrown one at a time, and reported together once every batch has finished.
+ */
+@Slf4j
+final class S3BatchDeleter {
+    /** Most keys a single DeleteObjects request accepts */
+    static final int MAX_KEYS_PER_REQUEST = 1000;
+
+    private final S3Client s3Client;
+    private final String bucketName;
+    private final ExecutorService executor;
+    private final int parallelism;
+
+    S3BatchDeleter(S3Client s3Client, String bucketName, ExecutorService executor, int parallelism) {
+        this.s3Client = s3Client;
+        this.bucketName = bucketName;
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Deletes every key of {@code keys}, returning how many were deleted.
+     * @throws PartialDeleteException if some keys could not be deleted
+     */
+    long deleteAll(String prefix, Stream<String> keys) {
+        Semaphore inFlight = new Semaphore(parallelism);
+        Map<String, String> failures = new ConcurrentHashMap<>();
+        LongAdder deleted = new LongAdder();
+        List<Future<?>> batches = new ArrayList<>();
+        try {
+            List<ObjectIdentifier> batch = new ArrayList<>(MAX_KEYS_PER_REQUEST);
+            for (Iterator<String> it = keys.iterator(); it.hasNext(); ) {
+                batch.add(ObjectIdentifier.builder().key(it.next()).build());
+                if (batch.size() == MAX_KEYS_PER_REQUEST) {
+                    batches.add(submit(batch, inFlight, failures, deleted));
+                    batch = new ArrayList<>(MAX_KEYS_PER_REQUEST);
+                }
+            }
+            if (!batch.isEmpty()) {
+                batches.add(submit(batch, inFlight, failures, deleted));
+            }
+        } finally {
+            // Even when the listing fails, the batches already sent must finish before returning
+            awaitAll(batches);
+        }
+        if (!failures.isEmpty()) {
+            throw new PartialDeleteException(prefix, deleted.sum(), failures);
+        }
+        return deleted.sum();
+    }
+
+    private Future<?> submit(List<ObjectIdentifier> batch, Semaphore inFlight,
+                             Map<String, String> failures, LongAdder deleted) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while deleting objects", e);
+        }
+        try {
+            return executor.submit(() -> {
+                try {
+                    deleteBatch(batch, failures, deleted);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private void deleteBatch(List<ObjectIdentifier> batch, Map<String, String> failures, LongAdder deleted) {
+        try {
+            // Quiet mode only lists the keys that failed, which keeps responses small
+            DeleteObjectsResponse response = s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                .bucket(bucketName)
+                .delete(Delete.builder().objects(batch).quiet(true).build())
+                .build());
+            for (S3Error error : response.errors()) {
+                failures.put(error.key(), error.code() + ": " + error.message());
+            }
+            deleted.add(batch.size() - response.errors().size());
+        } catch (S3Exception e) {
+            log.warn("Failed to delete batch of {} objects: {} ({})", batch.size(), e.getMessage(), e.awsErrorDetails().errorCode());
+            String reason = e.awsErrorDetails().errorCode() + ": " + e.awsErrorDetails().errorMessage();
+            batch.forEach(object -> failures.put(object.key(), reason));
+        } catch (RuntimeException e) {
+            // Client side failures such as timeouts leave the outcome of the whole batch unknown
+            log.warn("Failed to delete batch of {} objects: {}", batch.size(), e.getMessage());
+            batch.forEach(object -> failures.put(object.key(), e.getMessage()));
+        }
+    }
+
+    private static void awaitAll(List<Future<?>> batches) {
+        boolean interrupted = false;
+        for (Future<?> batch : batches) {
+            while (true) {
+                try {
+                    batch.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    // deleteBatch records failures itself, so this is only ever an Error
+                    log.error("Delete batch failed: {}", e.getCause().getMessage(), e.getCause());
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
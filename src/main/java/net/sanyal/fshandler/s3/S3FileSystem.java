@@ -1,43 +1,126 @@
 package net.sanyal.fshandler.s3;
 
 import net.sanyal.fshandler.core.FileSystem;
+import net.sanyal.fshandler.core.PartialDeleteException;
+import net.sanyal.fshandler.core.PartialMoveException;
+import net.sanyal.fshandler.core.PathNotFoundException;
 import net.sanyal.fshandler.core.config.S3FileSystemConfig;
+import net.sanyal.fshandler.core.model.FileListPage;
 import net.sanyal.fshandler.core.model.FileMetadata;
+import net.sanyal.fshandler.core.model.FileQuery;
 import lombok.extern.slf4j.Slf4j;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
 
 import java.io.*;
 import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.annotation.PreDestroy;
 
 @Slf4j
 public class S3FileSystem implements FileSystem, AutoCloseable {
+    private static final int MAX_PARTS = 10_000;
+    private static final int MAX_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+    private static final int MAX_KEYS_PER_PAGE = 1000;
+    // U+10FFFF, the largest code point, sorts after every key below a prefix
+    private static final String MAX_KEY_CHARACTER = new String(Character.toChars(Character.MAX_CODE_POINT));
+
     private final S3Client s3Client;
     private final String bucketName;
+    private final int partSize;
+    private final int maxInFlightParts;
+    private final int readPartSize;
+    private final int readParallelism;
+    private final ExecutorService transferExecutor;
+    private final ExecutorService listExecutor;
+    private final S3PrefixShardedLister shardedLister;
+    private final S3BatchDeleter batchDeleter;
+    private final S3ObjectCopier copier;
+    private final long copyPartSize;
+    private final int copyParallelism;
+    private final int deleteParallelism;
+    private final int moveParallelism;
 
     public S3FileSystem(S3FileSystemConfig config) {
         if (config == null || config.getBucketName() == null || config.getRegion() == null
             || config.getAccessKey() == null || config.getSecretKey() == null) {
             throw new IllegalArgumentException("All S3 configuration parameters must be provided");
         }
+        if (config.getPartSizeBytes() < S3FileSystemConfig.MIN_PART_SIZE_BYTES || config.getMaxInFlightParts() < 1) {
+            throw new IllegalArgumentException("Part size must be at least 5 MB and at least one part must be allowed in flight");
+        }
+        if (config.getReadPartSizeBytes() < 1) {
+            throw new IllegalArgumentException("Read part size must be positive");
+        }
+        if (config.getDeleteParallelism() < 1) {
+            throw new IllegalArgumentException("Delete parallelism must be at least 1");
+        }
+        if (config.getCopyPartSizeBytes() < S3FileSystemConfig.MIN_PART_SIZE_BYTES
+            || config.getCopyPartSizeBytes() > S3ObjectCopier.MAX_COPY_OBJECT_SIZE || config.getCopyParallelism() < 1) {
+            throw new IllegalArgumentException("Copy part size must be between 5 MB and 5 GB and copy parallelism at least 1");
+        }
+        if (config.getMoveParallelism() < 1) {
+            throw new IllegalArgumentException("Move parallelism must be at least 1");
+        }
         this.bucketName = config.getBucketName();
+        this.partSize = config.getPartSizeBytes();
+        this.maxInFlightParts = config.getMaxInFlightParts();
+        this.readPartSize = config.getReadPartSizeBytes();
+        this.readParallelism = config.getReadParallelism();
+        this.copyPartSize = config.getCopyPartSizeBytes();
+        this.copyParallelism = config.getCopyParallelism();
+        this.deleteParallelism = config.getDeleteParallelism();
+        this.moveParallelism = config.getMoveParallelism();
         this.s3Client = initializeS3Client(config);
+        // Either way at most maxConnections transfers run at once; beyond that the HTTP client
+        // would only queue requests until they time out
+        this.transferExecutor = config.isVirtualThreads()
+            ? new BoundedVirtualThreadExecutor("s3-transfer-", Math.max(1, config.getMaxConnections()))
+            : Executors.newFixedThreadPool(Math.max(1, config.getMaxConnections()),
+                Thread.ofPlatform().name("s3-transfer-", 0).daemon(true).factory());
+        // Listing workers park while their consumer is not reading, so they get virtual threads of
+        // their own; the client bounds the requests they have in flight
+        this.listExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("s3-list-", 0).factory());
+        this.shardedLister = new S3PrefixShardedLister(s3Client, bucketName, listExecutor,
+            Math.max(1, config.getMaxConnections()));
+        this.batchDeleter = new S3BatchDeleter(s3Client, bucketName, transferExecutor, config.getDeleteParallelism());
+        this.copier = new S3ObjectCopier(s3Client, bucketName, transferExecutor, copyPartSize, copyParallelism);
         ensureBucketExists();
     }
 
     private S3Client initializeS3Client(S3FileSystemConfig config) {
+        int maxConnections = Math.max(1, config.getMaxConnections());
+        var httpClient = ApacheHttpClient.builder()
+            .maxConnections(maxConnections);
+        if (config.getTimeoutMillis() > 0) {
+            httpClient.connectionTimeout(Duration.ofMillis(config.getTimeoutMillis()))
+                .socketTimeout(Duration.ofMillis(config.getTimeoutMillis()));
+        }
         var builder = S3Client.builder()
             .region(Region.of(config.getRegion()))
             .credentialsProvider(StaticCredentialsProvider.create(
-                AwsBasicCredentials.create(config.getAccessKey(), config.getSecretKey())));
+                AwsBasicCredentials.create(config.getAccessKey(), config.getSecretKey())))
+            .httpClientBuilder(httpClient)
+            // Every path shares one limit, so their requests queue for a connection instead of timing out
+            .overrideConfiguration(c -> c.addExecutionInterceptor(new S3RequestLimiter(maxConnections)));
 
         String endpointUrl = System.getProperty("aws.endpoint-url");
         if (endpointUrl != null && !endpointUrl.isEmpty()) {
@@ -111,38 +194,81 @@ public class S3FileSystem implements FileSystem, AutoCloseable {
         if (path == null) {
             throw new IllegalArgumentException("Path must not be null when reading a file");
         }
+        try {
+            ResponseInputStream<GetObjectResponse> response = s3Client.getObject(GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(path)
+                .build());
+            if (readParallelism > 1 && response.response().contentLength() > readPartSize) {
+                // Large objects are fetched as concurrent byte ranges behind the caller's back
+                return new S3PrefetchingInputStream(s3Client, bucketName, path, response,
+                    readPartSize, readParallelism, transferExecutor);
+            }
+            return new BufferedInputStream(response);
+        } catch (S3Exception e) {
+            if (isNotFound(e)) {
+                log.debug("No object found at path '{}'", path);
+                throw new PathNotFoundException(path, e);
+            }
+            log.error("Failed to read file at path '{}': {} ({})", path, e.getMessage(), e.awsErrorDetails().errorCode(), e);
+            throw new RuntimeException("Failed to read file: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public InputStream readFile(String path, long offset, long length) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path must not be null when reading a file");
+        }
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Offset and length must not be negative");
+        }
+        if (length == 0) {
+            // An empty range cannot be expressed in a Range header
+            return InputStream.nullInputStream();
+        }
+        // An open-ended range covers lengths that would overflow the last byte position
+        long lastByte = offset + length - 1;
+        String range = lastByte < offset ? "bytes=" + offset + "-" : "bytes=" + offset + "-" + lastByte;
         try {
             return new BufferedInputStream(s3Client.getObject(GetObjectRequest.builder()
                 .bucket(bucketName)
                 .key(path)
+                .range(range)
                 .build()));
         } catch (S3Exception e) {
-            log.error("Failed to read file at path '{}': {} ({})", path, e.getMessage(), e.awsErrorDetails().errorCode(), e);
+            if (isNotFound(e)) {
+                log.debug("No object found at path '{}'", path);
+                throw new PathNotFoundException(path, e);
+            }
+            log.error("Failed to read range of file at path '{}': {} ({})", path, e.getMessage(), e.awsErrorDetails().errorCode(), e);
             throw new RuntimeException("Failed to read file: " + e.getMessage(), e);
         }
     }
 
+    @Override
+    public Optional<Path> getLocalPath(String path) {
+        // Objects live in the bucket, there is never a local file to hand out
+        return Optional.empty();
+    }
+
     @Override
     public OutputStream writeFile(String path) {
+        return writeFile(path, -1);
+    }
+
+    @Override
+    public OutputStream writeFile(String path, long expectedSize) {
         if (path == null) {
             throw new IllegalArgumentException("Path must not be null when writing to a file");
         }
-        return new ByteArrayOutputStream() {
-            @Override
-            public void close() throws IOException {
-                try {
-                    s3Client.putObject(PutObjectRequest.builder()
-                        .bucket(bucketName)
-                        .key(path)
-                        .build(),
-                        RequestBody.fromBytes(toByteArray()));
-                } catch (S3Exception e) {
-                    log.error("Failed to write to file at path '{}': {} ({})", path, e.getMessage(), e.awsErrorDetails().errorCode(), e);
-                    throw new IOException("Failed to write to file: " + e.getMessage(), e);
-                }
-                super.close();
-            }
-        };
+        int uploadPartSize = partSize;
+        if (expectedSize > (long) partSize * MAX_PARTS) {
+            // Grow the parts so that the object still fits into the number of parts S3 allows
+            uploadPartSize = (int) Math.min(MAX_BUFFER_SIZE, Math.ceilDiv(expectedSize, MAX_PARTS));
+        }
+        return new S3MultipartOutputStream(s3Client, bucketName, path, uploadPartSize, maxInFlightParts,
+            expectedSize, transferExecutor);
     }
 
     @Override
@@ -159,36 +285,118 @@ public class S3FileSystem implements FileSystem, AutoCloseable {
             throw new IllegalArgumentException("Source and destination paths must not be null when moving a file");
         }
         try {
-            // Copy the object to the new location
-            s3Client.copyObject(CopyObjectRequest.builder()
-                .sourceBucket(bucketName)
-                .sourceKey(sourcePath)
-                .destinationBucket(bucketName)
-                .destinationKey(destinationPath)
-                .build());
-
-            // Delete the original object
-            s3Client.deleteObject(DeleteObjectRequest.builder()
-                .bucket(bucketName)
-                .key(sourcePath)
-                .build());
-
-            return getMetadata(destinationPath);
+            if (!sourcePath.endsWith("/")) {
+                Optional<HeadObjectResponse> source = headIfExists(sourcePath);
+                if (source.isPresent()) {
+                    copier.copy(sourcePath, source.get().contentLength(), source.get().eTag(), destinationPath);
+                    s3Client.deleteObject(DeleteObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(sourcePath)
+                        .build());
+                    return getMetadata(destinationPath);
+                }
+            }
+            // No object has that key, so it can only name a directory
+            return movePrefix(sourcePath, destinationPath);
+        } catch (PartialMoveException e) {
+            log.error("Failed to move {} objects from '{}' to '{}'", e.getFailures().size(), sourcePath, destinationPath);
+            throw e;
         } catch (S3Exception e) {
             log.error("Failed to move file from '{}' to '{}': {} ({})", sourcePath, destinationPath, e.getMessage(), e.awsErrorDetails().errorCode(), e);
             throw new RuntimeException("Failed to move file: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Moves every object below a prefix. Copies and deletes run on virtual threads of their own rather
+     * than on the bounded transfer executor, where moves waiting for their own part copies could take
+     * every thread.
+     */
+    private FileMetadata movePrefix(String sourcePath, String destinationPath) {
+        String sourcePrefix = sourcePath.endsWith("/") ? sourcePath : sourcePath + "/";
+        String destinationPrefix = destinationPath.endsWith("/") ? destinationPath : destinationPath + "/";
+        if (destinationPrefix.startsWith(sourcePrefix)) {
+            throw new IllegalArgumentException("Cannot move a directory into itself: " + sourcePath);
+        }
+        long start = System.nanoTime();
+        long moved;
+        try (ExecutorService moveExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("s3-move-", 0).factory());
+             Stream<S3Object> objects = shardedLister.list(sourcePrefix)) {
+            S3PrefixMover mover = new S3PrefixMover(
+                new S3ObjectCopier(s3Client, bucketName, moveExecutor, copyPartSize, copyParallelism),
+                new S3BatchDeleter(s3Client, bucketName, moveExecutor, deleteParallelism),
+                moveExecutor, moveParallelism);
+            moved = mover.move(sourcePrefix, destinationPrefix, objects);
+        }
+        if (moved == 0) {
+            log.debug("Source path '{}' of move not found", sourcePath);
+            throw new PathNotFoundException(sourcePath);
+        }
+        log.info("Moved {} objects from '{}' to '{}' in {} ms", moved, sourcePrefix, destinationPrefix,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        String path = destinationPrefix.substring(0, destinationPrefix.length() - 1);
+        return FileMetadata.builder()
+            .name(path.substring(path.lastIndexOf('/') + 1))
+            .path(path)
+            .size(0)
+            .isDirectory(true)
+            .build();
+    }
+
+    private Optional<HeadObjectResponse> headIfExists(String key) {
+        try {
+            return Optional.of(s3Client.headObject(HeadObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .build()));
+        } catch (S3Exception e) {
+            if (isNotFound(e)) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
     @Override
     public FileMetadata rename(String path, String newName) {
         if (path == null || newName == null) {
             throw new IllegalArgumentException("Path and new name must not be null when renaming a file");
         }
-        String parentPath = path.substring(0, path.lastIndexOf('/') + 1);
+        // A directory may be named with its trailing slash, which is not where its name ends
+        String trimmed = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        String parentPath = trimmed.substring(0, trimmed.lastIndexOf('/') + 1);
         return move(path, parentPath + newName);
     }
 
+    @Override
+    public FileMetadata copy(String sourcePath, String destinationPath) {
+        if (sourcePath == null || destinationPath == null) {
+            throw new IllegalArgumentException("Source and destination paths must not be null when copying a file");
+        }
+        if (sourcePath.equals(destinationPath)) {
+            throw new IllegalArgumentException("Source and destination paths must differ when copying a file");
+        }
+        if (sourcePath.endsWith("/")) {
+            throw new IllegalArgumentException("Source path must be a file when copying: " + sourcePath);
+        }
+        try {
+            // The size decides between CopyObject and a multipart copy
+            HeadObjectResponse source = s3Client.headObject(HeadObjectRequest.builder()
+                .bucket(bucketName)
+                .key(sourcePath)
+                .build());
+            copier.copy(sourcePath, source.contentLength(), source.eTag(), destinationPath);
+            return getMetadata(destinationPath);
+        } catch (S3Exception e) {
+            if (isNotFound(e)) {
+                log.debug("Source path '{}' of copy not found", sourcePath);
+                throw new PathNotFoundException(sourcePath, e);
+            }
+            log.error("Failed to copy file from '{}' to '{}': {} ({})", sourcePath, destinationPath, e.getMessage(), e.awsErrorDetails().errorCode(), e);
+            throw new RuntimeException("Failed to copy file: " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public void delete(String path) {
         if (path == null) {
@@ -196,77 +404,83 @@ public class S3FileSystem implements FileSystem, AutoCloseable {
         }
         try {
             if (path.endsWith("/")) {
-                // Delete all objects under this prefix for directories
-                ListObjectsV2Request.Builder requestBuilder = ListObjectsV2Request.builder()
-                    .bucket(bucketName)
-                    .prefix(path);
-
-                ListObjectsV2Response response;
-                do {
-                    response = s3Client.listObjectsV2(requestBuilder.build());
-                    for (S3Object object : response.contents()) {
-                        s3Client.deleteObject(DeleteObjectRequest.builder()
-                            .bucket(bucketName)
-                            .key(object.key())
-                            .build());
-                    }
-                    requestBuilder.continuationToken(response.nextContinuationToken());
-                } while (response.isTruncated());
+                // Keys are deleted in batches while the rest of the prefix is still being listed. Like
+                // the copies of a move, the batches get virtual threads of their own, so they never
+                // wait behind transfers for a thread of the bounded transfer executor
+                try (ExecutorService deleteExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("s3-delete-", 0).factory());
+                     Stream<S3Object> objects = shardedLister.list(path)) {
+                    long deleted = new S3BatchDeleter(s3Client, bucketName, deleteExecutor, deleteParallelism)
+                        .deleteAll(path, objects.map(S3Object::key));
+                    log.debug("Deleted {} objects below '{}'", deleted, path);
+                }
             } else {
                 s3Client.deleteObject(DeleteObjectRequest.builder()
                     .bucket(bucketName)
                     .key(path)
                     .build());
             }
+        } catch (PartialDeleteException e) {
+            log.error("Failed to delete {} objects below '{}'", e.getFailures().size(), path);
+            throw e;
         } catch (S3Exception e) {
             log.error("Failed to delete path '{}': {} ({})", path, e.getMessage(), e.awsErrorDetails().errorCode(), e);
             throw new RuntimeException("Failed to delete: " + e.getMessage(), e);
         }
     }
 
+    @Override
+    public Map<String, RuntimeException> deleteAll(List<String> paths) {
+        if (paths == null) {
+            throw new IllegalArgumentException("Paths must not be null when deleting files or directories");
+        }
+        Map<String, RuntimeException> failures = new LinkedHashMap<>();
+        List<String> keys = new ArrayList<>();
+        for (String path : paths) {
+            if (path == null || path.endsWith("/")) {
+                try {
+                    delete(path);
+                } catch (RuntimeException e) {
+                    failures.put(path, e);
+                }
+            } else {
+                keys.add(path);
+            }
+        }
+        // Single objects share DeleteObjects requests instead of costing a round trip each
+        try {
+            batchDeleter.deleteAll("", keys.stream());
+        } catch (PartialDeleteException e) {
+            log.error("Failed to delete {} of {} objects", e.getFailures().size(), keys.size());
+            e.getFailures().forEach((key, reason) -> failures.put(key, new RuntimeException("Failed to delete: " + reason)));
+        }
+        return failures;
+    }
+
     @Override
     public List<FileMetadata> list(String path, Predicate<FileMetadata> filter) {
         if (path == null) {
             throw new IllegalArgumentException("Path must not be null when listing directory contents");
         }
         try {
-            // For root directory, don't use any prefix
-            String prefix = path.isEmpty() ? null : (path.endsWith("/") ? path : path + "/");
-            System.out.println("S3 list - Using prefix: '" + prefix + "'");
-            
-            ListObjectsV2Request.Builder requestBuilder = ListObjectsV2Request.builder()
-                .bucket(bucketName);
-                
-            if (prefix != null) {
-                requestBuilder.prefix(prefix);
-            }
-            
-            // Only use delimiter for non-empty paths
-            if (!path.isEmpty()) {
-                requestBuilder.delimiter("/");
+            // The delimiter rolls everything below a subdirectory up into one common prefix, so even
+            // the bucket root costs a page per 1000 direct children instead of a full scan
+            String prefix = path.isEmpty() ? "" : path.endsWith("/") ? path : path + "/";
+            Predicate<FileMetadata> effectiveFilter = filter != null ? filter : metadata -> true;
+            long maxResults = FileQuery.maxResultsOf(filter);
+            List<FileMetadata> result = new ArrayList<>();
+            for (ListObjectsV2Response response : s3Client.listObjectsV2Paginator(ListObjectsV2Request.builder()
+                    .bucket(bucketName)
+                    .prefix(listPrefix(prefix, filter, false))
+                    .delimiter("/")
+                    .build())) {
+                directoryEntries(response, prefix).stream()
+                    .filter(effectiveFilter)
+                    .limit(maxResults - result.size())
+                    .forEach(result::add);
+                if (result.size() >= maxResults) {
+                    break;
+                }
             }
-
-            ListObjectsV2Response response = s3Client.listObjectsV2(requestBuilder.build());
-
-            System.out.println("S3 list - Raw objects found:");
-            response.contents().forEach(obj -> System.out.println(" - " + obj.key()));
-
-            List<FileMetadata> result = response.contents().stream()
-                .filter(obj -> {
-                    // For root directory, only include files without '/'
-                    if (path.isEmpty()) {
-                        return !obj.key().contains("/");
-                    }
-                    // For other directories, filter out the directory itself and other directories
-                    return !obj.key().equals(prefix) && !obj.key().endsWith("/");
-                })
-                .map(this::createFileMetadata)
-                .filter(filter != null ? filter : metadata -> true)
-                .collect(Collectors.toList());
-
-            System.out.println("S3 list - After filtering:");
-            result.forEach(meta -> System.out.println(" - " + meta.getPath() + " (name: " + meta.getName() + ")"));
-
             return result;
         } catch (S3Exception e) {
             log.error("Failed to list directory at path '{}': {} ({})", path, e.getMessage(), e.awsErrorDetails().errorCode(), e);
@@ -281,22 +495,98 @@ public class S3FileSystem implements FileSystem, AutoCloseable {
         }
         try {
             String prefix = path.isEmpty() ? "" : path.endsWith("/") ? path : path + "/";
-            ListObjectsV2Response response = s3Client.listObjectsV2(ListObjectsV2Request.builder()
-                .bucket(bucketName)
-                .prefix(prefix)
-                .build());
-
-            return response.contents().stream()
-                .filter(obj -> !obj.key().equals(prefix)) // Filter out the directory itself
-                .map(this::createFileMetadata)
-                .filter(filter != null ? filter : metadata -> true)
-                .collect(Collectors.toList());
+            try (Stream<S3Object> objects = shardedLister.list(listPrefix(prefix, filter, true))) {
+                return objects
+                    .filter(obj -> !obj.key().equals(prefix)) // Filter out the directory itself
+                    .map(S3FileSystem::createFileMetadata)
+                    .filter(filter != null ? filter : metadata -> true)
+                    .limit(FileQuery.maxResultsOf(filter))
+                    .collect(Collectors.toList());
+            }
         } catch (S3Exception e) {
             log.error("Failed to list directory recursively at path '{}': {} ({})", path, e.getMessage(), e.awsErrorDetails().errorCode(), e);
             throw new RuntimeException("Failed to list directory recursively: " + e.getMessage(), e);
         }
     }
 
+    @Override
+    public Stream<FileMetadata> listStream(String path, boolean recursive, Predicate<FileMetadata> filter) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path must not be null when listing directory contents");
+        }
+        String prefix = path.isEmpty() ? "" : path.endsWith("/") ? path : path + "/";
+        // Both sources only request further pages of keys as the stream is consumed
+        Stream<FileMetadata> entries = recursive
+            ? shardedLister.list(listPrefix(prefix, filter, true))
+                .filter(obj -> !obj.key().equals(prefix))
+                .map(S3FileSystem::createFileMetadata)
+            : s3Client.listObjectsV2Paginator(ListObjectsV2Request.builder()
+                .bucket(bucketName)
+                .prefix(listPrefix(prefix, filter, false))
+                .delimiter("/")
+                .build())
+                .stream()
+                .flatMap(response -> directoryEntries(response, prefix).stream());
+        return entries
+            .filter(filter != null ? filter : metadata -> true)
+            .limit(FileQuery.maxResultsOf(filter));
+    }
+
+    @Override
+    public FileListPage listPage(String path, boolean recursive, Predicate<FileMetadata> filter, String cursor, int limit) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path must not be null when listing directory contents");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        try {
+            String prefix = path.isEmpty() ? "" : path.endsWith("/") ? path : path + "/";
+            Predicate<FileMetadata> effectiveFilter = filter != null ? filter : metadata -> true;
+            // Keys come back in lexicographic order, so the cursor is simply the key (or common
+            // prefix) of the last entry returned and maps onto startAfter
+            ListObjectsV2Request.Builder requestBuilder = ListObjectsV2Request.builder()
+                .bucket(bucketName)
+                .prefix(listPrefix(prefix, filter, recursive))
+                .maxKeys(Math.min(MAX_KEYS_PER_PAGE, limit + 1));
+            if (!recursive) {
+                requestBuilder.delimiter("/");
+            }
+            if (cursor != null && !cursor.isEmpty()) {
+                // Keys below a common prefix sort after it and would roll up into it again, so a
+                // directory cursor has to skip its whole subtree
+                requestBuilder.startAfter(!recursive && cursor.endsWith("/") ? cursor + MAX_KEY_CHARACTER : cursor);
+            }
+
+            List<FileMetadata> items = new ArrayList<>();
+            ListObjectsV2Response response;
+            do {
+                response = s3Client.listObjectsV2(requestBuilder.build());
+                List<FileMetadata> entries = recursive
+                    ? response.contents().stream()
+                        .filter(obj -> !obj.key().equals(prefix))
+                        .map(S3FileSystem::createFileMetadata)
+                        .collect(Collectors.toList())
+                    : directoryEntries(response, prefix);
+                for (FileMetadata metadata : entries) {
+                    if (!effectiveFilter.test(metadata)) {
+                        continue;
+                    }
+                    if (items.size() == limit) {
+                        // One more match exists, so the page is full and another one follows
+                        return FileListPage.builder().items(items).nextCursor(keyOf(items.get(limit - 1))).build();
+                    }
+                    items.add(metadata);
+                }
+                requestBuilder.continuationToken(response.nextContinuationToken());
+            } while (response.isTruncated());
+            return FileListPage.builder().items(items).build();
+        } catch (S3Exception e) {
+            log.error("Failed to list page of directory at path '{}': {} ({})", path, e.getMessage(), e.awsErrorDetails().errorCode(), e);
+            throw new RuntimeException("Failed to list directory: " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public FileMetadata getMetadata(String path) {
         if (path == null) {
@@ -317,12 +607,69 @@ public class S3FileSystem implements FileSystem, AutoCloseable {
                 .isDirectory(path.endsWith("/"))
                 .build();
         } catch (S3Exception e) {
+            if (isNotFound(e)) {
+                log.debug("No object found at path '{}'", path);
+                throw new PathNotFoundException(path, e);
+            }
             log.error("Failed to get metadata for path '{}': {} ({})", path, e.getMessage(), e.awsErrorDetails().errorCode(), e);
             throw new RuntimeException("Failed to get metadata: " + e.getMessage(), e);
         }
     }
 
-    private FileMetadata createFileMetadata(S3Object s3Object) {
+    private static boolean isNotFound(S3Exception e) {
+        // HeadObject has no body to carry a NoSuchKey code, only the status tells a missing key apart
+        return e.statusCode() == 404;
+    }
+
+    /**
+     * Narrows the listed prefix to the literal leading part of a path glob, so S3 only returns keys
+     * that can match. A non-recursive listing can only narrow within the directory's direct children.
+     */
+    private static String listPrefix(String prefix, Predicate<FileMetadata> filter, boolean recursive) {
+        if (filter instanceof FileQuery query) {
+            String literal = query.literalPrefix();
+            if (literal.length() > prefix.length() && literal.startsWith(prefix)
+                && (recursive || literal.indexOf('/', prefix.length()) < 0)) {
+                return literal;
+            }
+        }
+        return prefix;
+    }
+
+    /**
+     * Entries of one delimited listing page: the objects directly below {@code prefix} and its common
+     * prefixes as directories, merged in key order.
+     */
+    static List<FileMetadata> directoryEntries(ListObjectsV2Response response, String prefix) {
+        List<FileMetadata> entries = new ArrayList<>(response.contents().size() + response.commonPrefixes().size());
+        response.contents().stream()
+            .filter(obj -> !obj.key().equals(prefix)) // Filter out the directory marker itself
+            .map(S3FileSystem::createFileMetadata)
+            .forEach(entries::add);
+        response.commonPrefixes().stream()
+            .map(S3FileSystem::createDirectoryMetadata)
+            .forEach(entries::add);
+        entries.sort(java.util.Comparator.comparing(S3FileSystem::keyOf));
+        return entries;
+    }
+
+    /** The key (or common prefix) an entry was listed under */
+    private static String keyOf(FileMetadata metadata) {
+        return metadata.isDirectory() ? metadata.getPath() + "/" : metadata.getPath();
+    }
+
+    static FileMetadata createDirectoryMetadata(CommonPrefix commonPrefix) {
+        // A common prefix is not an object, so it has no size or timestamps of its own
+        String path = commonPrefix.prefix().substring(0, commonPrefix.prefix().length() - 1);
+        return FileMetadata.builder()
+            .name(path.substring(path.lastIndexOf('/') + 1))
+            .path(path)
+            .size(0)
+            .isDirectory(true)
+            .build();
+    }
+
+    static FileMetadata createFileMetadata(S3Object s3Object) {
         String key = s3Object.key();
         boolean isDirectory = key.endsWith("/");
         
@@ -357,6 +704,12 @@ public class S3FileSystem implements FileSystem, AutoCloseable {
     @PreDestroy
     @Override
     public void close() {
+        if (transferExecutor != null) {
+            transferExecutor.shutdownNow();
+        }
+        if (listExecutor != null) {
+            listExecutor.shutdownNow();
+        }
         if (s3Client != null) {
             s3Client.close();
         }
@@ -0,0 +1,246 @@
+package net.sanyal.fshandler.s3;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sanyal.fshandler.core.io.Abortable;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Output stream that uploads an object to S3 in fixed-size parts while it is being written.
+ * <p>
+ * Each part is handed to the executor with {@code UploadPart} as soon as it is full, and at most
+ * {@code maxInFlightParts} parts are buffered or uploading at any time, so memory per upload is
+ * bounded by {@code partSize * (maxInFlightParts + 1)} regardless of the object size.
+ * Objects that fit into a single part are written with one {@code PutObject} and never start a
+ * multipart upload. Any failure aborts the multipart upload, and so does {@link #abort()}, which
+ * leaves a previous object at the key untouched.
+ */
+@Slf4j
+class S3MultipartOutputStream extends OutputStream implements Abortable {
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final S3Client s3Client;
+    private final String bucketName;
+    private final String key;
+    private final int partSize;
+    private final int maxBuffers;
+    private final Executor executor;
+    private final BlockingQueue<byte[]> freeBuffers;
+    private final List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+
+    private int allocatedBuffers;
+    private byte[] buffer;
+    private int position;
+    private String uploadId;
+    private volatile Throwable failure;
+    private boolean closed;
+
+    S3MultipartOutputStream(S3Client s3Client, String bucketName, String key, int partSize,
+                            int maxInFlightParts, long expectedSize, Executor executor) {
+        this.s3Client = s3Client;
+        this.bucketName = bucketName;
+        this.key = key;
+        this.partSize = partSize;
+        this.maxBuffers = maxInFlightParts + 1;
+        this.executor = executor;
+        this.freeBuffers = new ArrayBlockingQueue<>(maxBuffers);
+        // Start small so that tiny objects do not pay for a whole part buffer, or with the exact
+        // size when the caller knows the object fits into a single part
+        int initialSize = expectedSize >= 0 && expectedSize <= partSize ? (int) expectedSize : INITIAL_BUFFER_SIZE;
+        this.buffer = new byte[Math.min(partSize, initialSize)];
+        this.allocatedBuffers = 1;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureWritable();
+        if (position == buffer.length) {
+            makeRoom();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureWritable();
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0) {
+            if (position == buffer.length) {
+                makeRoom();
+            }
+            int n = Math.min(len, buffer.length - position);
+            System.arraycopy(b, off, buffer, position, n);
+            position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (uploadId == null) {
+                s3Client.putObject(PutObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .build(),
+                    RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, position), position));
+                return;
+            }
+            if (position > 0) {
+                submitPart();
+            }
+            List<CompletedPart> completedParts = new ArrayList<>(parts.size());
+            for (CompletableFuture<CompletedPart> part : parts) {
+                completedParts.add(part.join());
+            }
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                .build());
+        } catch (CompletionException | S3Exception e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            abortUpload();
+            log.error("Failed to write to file at path '{}': {}", key, cause.getMessage(), cause);
+            throw new IOException("Failed to write to file: " + cause.getMessage(), cause);
+        } catch (IOException | RuntimeException e) {
+            abortUpload();
+            throw e;
+        } finally {
+            buffer = null;
+            freeBuffers.clear();
+        }
+    }
+
+    @Override
+    public void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // Nothing has been written to the key yet: a small object is only put on close, and the
+        // parts of a multipart upload only become an object once it is completed
+        abortUpload();
+        buffer = null;
+        freeBuffers.clear();
+    }
+
+    private void ensureWritable() throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed");
+        }
+        Throwable cause = failure;
+        if (cause != null) {
+            closed = true;
+            abortUpload();
+            throw new IOException("Failed to write to file: " + cause.getMessage(), cause);
+        }
+    }
+
+    private void makeRoom() throws IOException {
+        if (buffer.length < partSize) {
+            buffer = Arrays.copyOf(buffer, (int) Math.min(partSize, Math.max(INITIAL_BUFFER_SIZE, 2L * buffer.length)));
+            return;
+        }
+        submitPart();
+    }
+
+    private void submitPart() throws IOException {
+        if (uploadId == null) {
+            try {
+                uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .build()).uploadId();
+            } catch (S3Exception e) {
+                log.error("Failed to start multipart upload for path '{}': {} ({})", key, e.getMessage(), e.awsErrorDetails().errorCode(), e);
+                throw new IOException("Failed to write to file: " + e.getMessage(), e);
+            }
+        }
+        int partNumber = parts.size() + 1;
+        byte[] data = buffer;
+        int length = position;
+        parts.add(CompletableFuture.supplyAsync(() -> uploadPart(partNumber, data, length), executor)
+            .whenComplete((part, e) -> {
+                if (e != null && failure == null) {
+                    failure = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                }
+                if (data.length == partSize) {
+                    freeBuffers.offer(data);
+                }
+            }));
+        buffer = nextBuffer();
+        position = 0;
+    }
+
+    private byte[] nextBuffer() throws IOException {
+        byte[] next = freeBuffers.poll();
+        if (next != null) {
+            return next;
+        }
+        if (allocatedBuffers < maxBuffers) {
+            allocatedBuffers++;
+            return new byte[partSize];
+        }
+        try {
+            // Blocks the writer until an in-flight part has been uploaded
+            return freeBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a part upload to finish");
+        }
+    }
+
+    private CompletedPart uploadPart(int partNumber, byte[] data, int length) {
+        UploadPartResponse response = s3Client.uploadPart(UploadPartRequest.builder()
+            .bucket(bucketName)
+            .key(key)
+            .uploadId(uploadId)
+            .partNumber(partNumber)
+            .contentLength((long) length)
+            .build(),
+            RequestBody.fromInputStream(new ByteArrayInputStream(data, 0, length), length));
+        return CompletedPart.builder()
+            .partNumber(partNumber)
+            .eTag(response.eTag())
+            .build();
+    }
+
+    private void abortUpload() {
+        if (uploadId == null) {
+            return;
+        }
+        parts.forEach(part -> part.cancel(false));
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .uploadId(uploadId)
+                .build());
+        } catch (S3Exception e) {
+            log.warn("Failed to abort multipart upload '{}' for path '{}': {}", uploadId, key, e.getMessage());
+        }
+    }
+}
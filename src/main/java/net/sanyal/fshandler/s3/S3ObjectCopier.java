@@ -0,0 +1,189 @@
+package net.sanyal.fshandler.s3;
+
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Copies objects inside the bucket without their content passing through the service.
+ * <p>
+ * Objects of up to 5 GB, the most a single {@code CopyObject} accepts, are copied with one request.
+ * Larger ones become a multipart upload whose parts are {@code UploadPartCopy} requests for
+ * consecutive byte ranges of the source, with at most {@code parallelism} of them in flight. The
+ * copy keeps the content type and user metadata of the source. Any failure aborts the upload.
+ * <p>
+ * Every request is conditional on the ETag the caller saw, so a source overwritten during the copy
+ * fails it with 412 Precondition Failed instead of producing an object spliced from two versions
+ * or one sized by the old version.
+ */
+@Slf4j
+final class S3ObjectCopier {
+    /** Largest object a single CopyObject request can copy */
+    static final long MAX_COPY_OBJECT_SIZE = 5L * 1024 * 1024 * 1024;
+    private static final int MAX_PARTS = 10_000;
+
+    private final S3Client s3Client;
+    private final String bucketName;
+    private final ExecutorService executor;
+    private final long partSize;
+    private final int parallelism;
+
+    S3ObjectCopier(S3Client s3Client, String bucketName, ExecutorService executor, long partSize, int parallelism) {
+        this.s3Client = s3Client;
+        this.bucketName = bucketName;
+        this.executor = executor;
+        this.partSize = partSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Copies {@code sourceKey}, an object of {@code size} bytes with ETag {@code eTag}, to
+     * {@code destinationKey}. Without an ETag the object is copied in whatever version it is in.
+     */
+    void copy(String sourceKey, long size, String eTag, String destinationKey) {
+        if (size <= MAX_COPY_OBJECT_SIZE) {
+            s3Client.copyObject(CopyObjectRequest.builder()
+                .sourceBucket(bucketName)
+                .sourceKey(sourceKey)
+                .copySourceIfMatch(eTag)
+                .destinationBucket(bucketName)
+                .destinationKey(destinationKey)
+                .build());
+            return;
+        }
+        copyMultipart(sourceKey, size, eTag, destinationKey);
+    }
+
+    private void copyMultipart(String sourceKey, long size, String eTag, String destinationKey) {
+        // Unlike CopyObject, a multipart upload does not carry over the content type and metadata by itself
+        HeadObjectResponse source = s3Client.headObject(HeadObjectRequest.builder()
+            .bucket(bucketName)
+            .key(sourceKey)
+            .ifMatch(eTag)
+            .build());
+        // Parts are copied from the version the size was taken from, or the one just looked at
+        String sourceETag = eTag != null ? eTag : source.eTag();
+        // Grow the parts so that the object still fits into the number of parts S3 allows
+        long copyPartSize = Math.max(partSize, Math.ceilDiv(size, MAX_PARTS));
+        int partCount = (int) Math.ceilDiv(size, copyPartSize);
+        String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+            .bucket(bucketName)
+            .key(destinationKey)
+            .contentType(source.contentType())
+            .metadata(source.metadata())
+            .build()).uploadId();
+        log.debug("Copying '{}' to '{}' in {} parts of {} bytes", sourceKey, destinationKey, partCount, copyPartSize);
+
+        Semaphore inFlight = new Semaphore(parallelism);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        List<Future<CompletedPart>> parts = new ArrayList<>(partCount);
+        try {
+            // A failed part stops further parts from being sent, the upload is aborted anyway
+            for (int i = 0; i < partCount && failure.get() == null; i++) {
+                int partNumber = i + 1;
+                long start = i * copyPartSize;
+                long end = Math.min(size, start + copyPartSize) - 1;
+                acquire(inFlight);
+                try {
+                    parts.add(executor.submit(() -> {
+                        try {
+                            return copyPart(sourceKey, sourceETag, destinationKey, uploadId, partNumber, start, end);
+                        } catch (RuntimeException e) {
+                            failure.compareAndSet(null, e);
+                            throw e;
+                        } finally {
+                            inFlight.release();
+                        }
+                    }));
+                } catch (RuntimeException e) {
+                    inFlight.release();
+                    throw e;
+                }
+            }
+            List<CompletedPart> completedParts = new ArrayList<>(partCount);
+            for (Future<CompletedPart> part : parts) {
+                completedParts.add(await(part));
+            }
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(destinationKey)
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                .build());
+        } catch (RuntimeException e) {
+            parts.forEach(part -> part.cancel(true));
+            abort(destinationKey, uploadId);
+            throw e;
+        }
+    }
+
+    private CompletedPart copyPart(String sourceKey, String sourceETag, String destinationKey, String uploadId,
+                                   int partNumber, long start, long end) {
+        String eTag = s3Client.uploadPartCopy(UploadPartCopyRequest.builder()
+            .sourceBucket(bucketName)
+            .sourceKey(sourceKey)
+            .copySourceIfMatch(sourceETag)
+            .destinationBucket(bucketName)
+            .destinationKey(destinationKey)
+            .uploadId(uploadId)
+            .partNumber(partNumber)
+            .copySourceRange("bytes=" + start + "-" + end)
+            .build()).copyPartResult().eTag();
+        return CompletedPart.builder()
+            .partNumber(partNumber)
+            .eTag(eTag)
+            .build();
+    }
+
+    private static void acquire(Semaphore inFlight) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while copying object", e);
+        }
+    }
+
+    private static CompletedPart await(Future<CompletedPart> part) {
+        try {
+            return part.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while copying object", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("Failed to copy part: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void abort(String key, String uploadId) {
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .uploadId(uploadId)
+                .build());
+        } catch (S3Exception e) {
+            log.warn("Failed to abort multipart copy '{}' for path '{}': {}", uploadId, key, e.getMessage());
+        }
+    }
+}
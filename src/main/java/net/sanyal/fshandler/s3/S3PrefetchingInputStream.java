@@ -0,0 +1,151 @@
+package net.sanyal.fshandler.s3;
+
+import net.sanyal.fshandler.core.io.BoundedInputStream;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Input stream that reads a large S3 object by fetching several byte ranges concurrently.
+ * <p>
+ * The first part is streamed from the {@code GetObject} that discovered the object size, while the
+ * following parts are fetched ahead with ranged requests into a bounded window of buffers and handed
+ * out in order. Ranged requests are pinned to the ETag of the first response, so an object that is
+ * overwritten mid-read fails the read instead of mixing two versions.
+ */
+class S3PrefetchingInputStream extends InputStream {
+    private final S3Client s3Client;
+    private final String bucketName;
+    private final String key;
+    private final String eTag;
+    private final long size;
+    private final int partSize;
+    private final int parallelism;
+    private final long partCount;
+    private final Executor executor;
+    private final Deque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+
+    private ResponseInputStream<GetObjectResponse> firstResponse;
+    private InputStream firstPart;
+    private long nextPartToFetch = 1;
+    private byte[] current;
+    private int position;
+    private boolean closed;
+
+    S3PrefetchingInputStream(S3Client s3Client, String bucketName, String key,
+                             ResponseInputStream<GetObjectResponse> firstResponse,
+                             int partSize, int parallelism, Executor executor) {
+        this.s3Client = s3Client;
+        this.bucketName = bucketName;
+        this.key = key;
+        this.eTag = firstResponse.response().eTag();
+        this.size = firstResponse.response().contentLength();
+        this.partSize = partSize;
+        this.parallelism = parallelism;
+        this.partCount = Math.ceilDiv(size, partSize);
+        this.executor = executor;
+        this.firstResponse = firstResponse;
+        this.firstPart = new BoundedInputStream(firstResponse, partSize);
+        prefetch();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int n = read(single, 0, 1);
+        return n < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed");
+        }
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (firstPart != null) {
+            int n = firstPart.read(b, off, len);
+            if (n >= 0) {
+                return n;
+            }
+            releaseFirstResponse();
+        }
+        while (current == null || position == current.length) {
+            CompletableFuture<byte[]> next = pending.poll();
+            if (next == null) {
+                return -1;
+            }
+            current = await(next);
+            position = 0;
+            prefetch();
+        }
+        int n = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        releaseFirstResponse();
+        pending.forEach(part -> part.cancel(false));
+        pending.clear();
+        current = null;
+    }
+
+    private void prefetch() {
+        while (pending.size() < parallelism && nextPartToFetch < partCount) {
+            long part = nextPartToFetch++;
+            pending.add(CompletableFuture.supplyAsync(() -> fetchPart(part), executor));
+        }
+    }
+
+    private byte[] fetchPart(long part) {
+        long start = part * partSize;
+        long end = Math.min(size, start + partSize) - 1;
+        return s3Client.getObjectAsBytes(GetObjectRequest.builder()
+            .bucket(bucketName)
+            .key(key)
+            .range("bytes=" + start + "-" + end)
+            .ifMatch(eTag)
+            .build()).asByteArrayUnsafe();
+    }
+
+    private byte[] await(CompletableFuture<byte[]> part) throws IOException {
+        try {
+            return part.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a part of '" + key + "'");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to read file: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void releaseFirstResponse() {
+        if (firstResponse != null) {
+            // Abort rather than close so the rest of the first response is not drained
+            firstResponse.abort();
+            firstResponse = null;
+            firstPart = null;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package net.sanyal.fshandler.s3;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sanyal.fshandler.core.PartialDeleteException;
+import net.sanyal.fshandler.core.PartialMoveException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Moves every object below one prefix to another.
+ * <p>
+ * Objects are copied on the executor while the source prefix is still being listed, with at most
+ * {@code parallelism} copies in flight. The sources of finished copies are deleted with batched
+ * DeleteObjects requests. A source is only deleted once its copy has succeeded, so after a failure
+ * every object is either at its destination or still at its source, possibly with a copy at the
+ * destination too. Running the same move again resumes it with whatever is left below the source.
+ * Copies are pinned to the ETag of the listing, so an object overwritten since it was listed fails
+ * to copy and stays at its source.
+ * Progress is logged after every batch of deleted sources.
+ */
+@Slf4j
+final class S3PrefixMover {
+    private final S3ObjectCopier copier;
+    private final S3BatchDeleter deleter;
+    private final Executor executor;
+    private final int parallelism;
+
+    S3PrefixMover(S3ObjectCopier copier, S3BatchDeleter deleter, Executor executor, int parallelism) {
+        this.copier = copier;
+        this.deleter = deleter;
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Moves {@code objects}, all below {@code sourcePrefix}, to the same keys below
+     * {@code destinationPrefix}, returning how many were moved.
+     * @throws PartialMoveException if some objects could not be moved
+     */
+    long move(String sourcePrefix, String destinationPrefix, Stream<S3Object> objects) {
+        Semaphore inFlight = new Semaphore(parallelism);
+        Map<String, String> failures = new ConcurrentHashMap<>();
+        Queue<String> copied = new ConcurrentLinkedQueue<>();
+        AtomicInteger pendingDeletes = new AtomicInteger();
+        long moved = 0;
+        try {
+            for (Iterator<S3Object> it = objects.iterator(); it.hasNext(); ) {
+                S3Object object = it.next();
+                String destinationKey = destinationPrefix + object.key().substring(sourcePrefix.length());
+                acquire(inFlight);
+                try {
+                    executor.execute(() -> {
+                        try {
+                            copier.copy(object.key(), object.size(), object.eTag(), destinationKey);
+                            copied.add(object.key());
+                            pendingDeletes.incrementAndGet();
+                        } catch (S3Exception e) {
+                            log.warn("Failed to copy '{}' to '{}': {}", object.key(), destinationKey, e.getMessage());
+                            failures.put(object.key(), e.awsErrorDetails().errorCode() + ": " + e.awsErrorDetails().errorMessage());
+                        } catch (RuntimeException e) {
+                            log.warn("Failed to copy '{}' to '{}': {}", object.key(), destinationKey, e.getMessage());
+                            failures.put(object.key(), String.valueOf(e.getMessage()));
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    inFlight.release();
+                    throw e;
+                }
+                if (pendingDeletes.get() >= S3BatchDeleter.MAX_KEYS_PER_REQUEST) {
+                    moved += deleteSources(sourcePrefix, destinationPrefix, copied, pendingDeletes, failures, moved);
+                }
+            }
+        } finally {
+            // Copies already started must finish before their sources can be deleted, or the move fails
+            inFlight.acquireUninterruptibly(parallelism);
+            inFlight.release(parallelism);
+        }
+        moved += deleteSources(sourcePrefix, destinationPrefix, copied, pendingDeletes, failures, moved);
+        if (!failures.isEmpty()) {
+            throw new PartialMoveException(sourcePrefix, destinationPrefix, moved, failures);
+        }
+        return moved;
+    }
+
+    /** Deletes the sources of every finished copy, returning how many were deleted */
+    private long deleteSources(String sourcePrefix, String destinationPrefix, Queue<String> copied,
+                               AtomicInteger pendingDeletes, Map<String, String> failures, long movedSoFar) {
+        List<String> keys = new ArrayList<>();
+        for (String key; (key = copied.poll()) != null; ) {
+            keys.add(key);
+        }
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        pendingDeletes.addAndGet(-keys.size());
+        long deleted;
+        try {
+            deleted = deleter.deleteAll(sourcePrefix, keys.stream());
+        } catch (PartialDeleteException e) {
+            // The copy exists, but so does the source; moving again only has to delete it
+            e.getFailures().forEach((key, reason) -> failures.put(key, "Copied but not deleted: " + reason));
+            deleted = e.getDeletedCount();
+        }
+        log.info("Moved {} objects from '{}' to '{}' so far", movedSoFar + deleted, sourcePrefix, destinationPrefix);
+        return deleted;
+    }
+
+    private static void acquire(Semaphore inFlight) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while moving objects", e);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package net.sanyal.fshandler.s3;
+
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lists every key below a prefix by sharding on its first-level common prefixes.
+ * <p>
+ * A delimited listing of the prefix discovers the objects directly below it and its "subdirectories".
+ * Its pages are fetched lazily by the consuming thread, and each subdirectory is handed to a worker
+ * as soon as its page arrives. Up to {@code parallelism} workers list subdirectories without a
+ * delimiter, each running its own continuation-token loop, so several ListObjectsV2 pages are in
+ * flight instead of one. Pages are handed to the consuming thread through a bounded queue: at most
+ * two pages per worker are buffered, and a consumer that stops reading stalls the workers instead of
+ * growing the heap. Keys of different shards interleave, so the stream is not in key order.
+ * <p>
+ * Workers run on the lister's own executor, and their requests count against the client's request
+ * limit only while in flight. A worker waiting for a slow consumer therefore holds neither a
+ * connection nor a thread that transfers or other listings need.
+ */
+@Slf4j
+class S3PrefixShardedLister {
+    private static final Page SHARD_DONE = new Page(Collections.emptyList(), null);
+
+    private final S3Client s3Client;
+    private final String bucketName;
+    private final ExecutorService executor;
+    private final int parallelism;
+
+    S3PrefixShardedLister(S3Client s3Client, String bucketName, ExecutorService executor, int parallelism) {
+        this.s3Client = s3Client;
+        this.bucketName = bucketName;
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Lists all objects below {@code prefix}. The stream may hold running workers and must be closed.
+     */
+    Stream<S3Object> list(String prefix) {
+        Iterator<ListObjectsV2Response> topLevel = s3Client.listObjectsV2Paginator(
+            request(prefix).delimiter("/").build()).iterator();
+        if (parallelism <= 1) {
+            Stream<ListObjectsV2Response> pages = StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(topLevel, Spliterator.NONNULL), false);
+            return pages.flatMap(page -> Stream.concat(page.contents().stream(), page.commonPrefixes().stream()
+                .flatMap(shard -> s3Client.listObjectsV2Paginator(request(shard.prefix()).build()).contents().stream())));
+        }
+        ShardIterator shardIterator = new ShardIterator(prefix, topLevel);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(shardIterator, Spliterator.NONNULL), false)
+            .onClose(shardIterator::close);
+    }
+
+    private ListObjectsV2Request.Builder request(String prefix) {
+        return ListObjectsV2Request.builder()
+            .bucket(bucketName)
+            .prefix(prefix);
+    }
+
+    /** A page of keys from one shard, or the failure that ended a worker */
+    private record Page(List<S3Object> objects, RuntimeException error) {
+    }
+
+    private final class ShardIterator implements Iterator<S3Object>, AutoCloseable {
+        private final String prefix;
+        private final Iterator<ListObjectsV2Response> topLevel;
+        private final Queue<String> pendingShards = new ConcurrentLinkedQueue<>();
+        private final BlockingQueue<Page> pages = new ArrayBlockingQueue<>(parallelism * 2);
+        private final AtomicInteger activeWorkers = new AtomicInteger();
+        private final List<Future<?>> workers = new ArrayList<>();
+        private volatile boolean closed;
+        private Iterator<S3Object> current = Collections.emptyIterator();
+        private int shardsStarted;
+        private int shardsDone;
+        private boolean done;
+
+        ShardIterator(String prefix, Iterator<ListObjectsV2Response> topLevel) {
+            this.prefix = prefix;
+            this.topLevel = topLevel;
+        }
+
+        private void addShard(String shard) {
+            shardsStarted++;
+            pendingShards.add(shard);
+            if (claimWorker()) {
+                workers.add(executor.submit(this::drainShards));
+            }
+        }
+
+        /** Counts one more worker as running, unless {@code parallelism} already are */
+        private boolean claimWorker() {
+            for (int active = activeWorkers.get(); active < parallelism; active = activeWorkers.get()) {
+                if (activeWorkers.compareAndSet(active, active + 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void drainShards() {
+            try {
+                do {
+                    String shard;
+                    while (!closed && (shard = pendingShards.poll()) != null) {
+                        ListObjectsV2Request.Builder request = request(shard);
+                        ListObjectsV2Response response;
+                        do {
+                            response = s3Client.listObjectsV2(request.build());
+                            if (!response.contents().isEmpty()) {
+                                pages.put(new Page(response.contents(), null));
+                            }
+                            request.continuationToken(response.nextContinuationToken());
+                        } while (response.isTruncated() && !closed);
+                        pages.put(SHARD_DONE);
+                    }
+                    activeWorkers.decrementAndGet();
+                    // A shard queued after the last poll may have found this worker still counted
+                } while (!closed && !pendingShards.isEmpty() && claimWorker());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                try {
+                    pages.put(new Page(null, e));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (done) {
+                    return false;
+                }
+                // Pages the workers already have are taken first, so they do not wait on the top level
+                Page page = pages.poll();
+                if (page == null && topLevel.hasNext()) {
+                    ListObjectsV2Response response = topLevel.next();
+                    for (CommonPrefix shard : response.commonPrefixes()) {
+                        addShard(shard.prefix());
+                    }
+                    current = response.contents().iterator();
+                    continue;
+                }
+                if (page == null) {
+                    if (shardsDone == shardsStarted) {
+                        done = true;
+                        log.debug("Listed {} shards below '{}'", shardsDone, prefix);
+                        return false;
+                    }
+                    page = take();
+                }
+                if (page == SHARD_DONE) {
+                    shardsDone++;
+                    continue;
+                }
+                if (page.error() != null) {
+                    done = true;
+                    close();
+                    throw page.error();
+                }
+                current = page.objects().iterator();
+            }
+            return true;
+        }
+
+        private Page take() {
+            try {
+                return pages.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new IllegalStateException("Interrupted while listing objects", e);
+            }
+        }
+
+        @Override
+        public S3Object next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            // Workers blocked on a full queue are interrupted; the rest stop at their next page
+            workers.forEach(worker -> worker.cancel(true));
+            pages.clear();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package net.sanyal.fshandler.s3;
+
+import software.amazon.awssdk.core.exception.AbortedException;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounds the requests in flight on one {@code S3Client} to the connections of its HTTP pool.
+ * <p>
+ * Transfers, listing workers, copies and batch deletes all share the client, and each of them
+ * bounding only its own requests lets their sum exceed the pool, where the excess fails with a
+ * connection-acquire timeout. Registered on the client, this interceptor makes every request wait
+ * for one of {@code maxConcurrentRequests} permits instead, on whichever thread issued it. A request
+ * holds its permit until its response has been read, which for a streamed {@code GetObject} is when
+ * the caller closes the stream, just as it holds the connection.
+ */
+final class S3RequestLimiter implements ExecutionInterceptor {
+    private static final ExecutionAttribute<Permit> PERMIT = new ExecutionAttribute<>("S3RequestLimiterPermit");
+
+    private final Semaphore permits;
+
+    S3RequestLimiter(int maxConcurrentRequests) {
+        this.permits = new Semaphore(maxConcurrentRequests);
+    }
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw AbortedException.builder()
+                .message("Interrupted while waiting for a free S3 connection")
+                .cause(e)
+                .build();
+        }
+        executionAttributes.putAttribute(PERMIT, new Permit());
+    }
+
+    @Override
+    public Optional<InputStream> modifyHttpResponseContent(Context.ModifyHttpResponse context,
+                                                           ExecutionAttributes executionAttributes) {
+        Optional<InputStream> body = context.responseBody();
+        Permit permit = executionAttributes.getAttribute(PERMIT);
+        // Only a successful GetObject hands its body past the end of the execution; error bodies
+        // are read by the client itself, possibly before a retry
+        if (permit == null || body.isEmpty() || !(context.request() instanceof GetObjectRequest)
+            || !context.httpResponse().isSuccessful()) {
+            return body;
+        }
+        permit.streamed = true;
+        return Optional.of(new FilterInputStream(body.get()) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    permit.release();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes executionAttributes) {
+        Permit permit = executionAttributes.getAttribute(PERMIT);
+        if (permit != null && !permit.streamed) {
+            permit.release();
+        }
+    }
+
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes executionAttributes) {
+        Permit permit = executionAttributes.getAttribute(PERMIT);
+        if (permit != null) {
+            permit.release();
+        }
+    }
+
+    /** The permit of one execution, released exactly once however its execution ends */
+    private final class Permit {
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile boolean streamed;
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+}
@@ -1,27 +1,58 @@
 package net.sanyal.fshandler.api;
 
 import net.sanyal.fshandler.core.FileSystem;
+import net.sanyal.fshandler.core.PathNotFoundException;
+import net.sanyal.fshandler.core.index.MetadataIndex;
+import net.sanyal.fshandler.core.io.Abortable;
+import net.sanyal.fshandler.core.model.FileListPage;
 import net.sanyal.fshandler.core.model.FileMetadata;
+import net.sanyal.fshandler.core.model.FileQuery;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @WebMvcTest(FileSystemController.class)
 class FileSystemControllerTest {
@@ -32,6 +63,9 @@ class FileSystemControllerTest {
     @MockBean
     private FileSystem fileSystem;
 
+    @MockBean
+    private MetadataIndex metadataIndex;
+
     @Test
     void createFile_ShouldReturnCreatedFile() throws Exception {
         FileMetadata metadata = FileMetadata.builder()
@@ -77,15 +111,163 @@ class FileSystemControllerTest {
     @Test
     void readFile_ShouldReturnFileContent() throws Exception {
         String content = "Hello, World!";
+        when(fileSystem.getMetadata("test.txt")).thenReturn(FileMetadata.builder()
+                .name("test.txt")
+                .path("test.txt")
+                .size(13L)
+                .lastModifiedTime(Instant.parse("2024-01-15T10:00:00Z"))
+                .build());
         when(fileSystem.readFile("test.txt"))
                 .thenReturn(new ByteArrayInputStream(content.getBytes()));
 
         mockMvc.perform(get("/api/v1/fs/file")
                         .param("path", "test.txt"))
                 .andExpect(status().isOk())
+                .andExpect(header().string("Last-Modified", "Mon, 15 Jan 2024 10:00:00 GMT"))
                 .andExpect(content().string(content));
     }
 
+    @Test
+    void readFile_ShouldReturnNotFoundForMissingFile() throws Exception {
+        when(fileSystem.getMetadata("missing.txt"))
+                .thenThrow(new PathNotFoundException("missing.txt"));
+        when(fileSystem.readFile("missing.txt"))
+                .thenThrow(new PathNotFoundException("missing.txt"));
+
+        mockMvc.perform(get("/api/v1/fs/file")
+                        .param("path", "missing.txt"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string("Error: Path not found: missing.txt"));
+    }
+
+    @Test
+    void readFile_ShouldStreamContentAndCloseBackendStream() throws Exception {
+        byte[] content = new byte[256 * 1024];
+        Arrays.fill(content, (byte) 'x');
+        AtomicBoolean closed = new AtomicBoolean(false);
+        when(fileSystem.getMetadata("large.bin")).thenReturn(FileMetadata.builder()
+                .name("large.bin")
+                .path("large.bin")
+                .size(content.length)
+                .build());
+        when(fileSystem.readFile("large.bin"))
+                .thenReturn(new ByteArrayInputStream(content) {
+                    @Override
+                    public void close() {
+                        closed.set(true);
+                    }
+                });
+
+        mockMvc.perform(get("/api/v1/fs/file")
+                        .param("path", "large.bin"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/octet-stream"))
+                .andExpect(content().bytes(content));
+
+        assertTrue(closed.get(), "Backend stream should be closed after the response is written");
+    }
+
+    @Test
+    void readFile_ShouldHandOffLocalFileToSendfile(@TempDir Path tempDir) throws Exception {
+        Path localFile = tempDir.resolve("static.bin");
+        Files.write(localFile, new byte[4096]);
+        when(fileSystem.getLocalPath("static.bin")).thenReturn(Optional.of(localFile));
+
+        mockMvc.perform(get("/api/v1/fs/file")
+                        .param("path", "static.bin")
+                        .requestAttr("org.apache.tomcat.sendfile.support", Boolean.TRUE))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Length", "4096"))
+                .andExpect(header().exists("Last-Modified"))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.filename", localFile.toString()))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.start", 0L))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.end", 4096L));
+    }
+
+    @Test
+    void readFile_ShouldStreamLocalFileWhenSendfileUnsupported(@TempDir Path tempDir) throws Exception {
+        Path localFile = tempDir.resolve("static.txt");
+        Files.writeString(localFile, "Hello, World!");
+        when(fileSystem.getLocalPath("static.txt")).thenReturn(Optional.of(localFile));
+        when(fileSystem.getMetadata("static.txt")).thenReturn(FileMetadata.builder()
+                .name("static.txt")
+                .path("static.txt")
+                .size(13L)
+                .build());
+        when(fileSystem.readFile("static.txt"))
+                .thenReturn(new ByteArrayInputStream("Hello, World!".getBytes()));
+
+        mockMvc.perform(get("/api/v1/fs/file")
+                        .param("path", "static.txt"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Hello, World!"));
+    }
+
+    @Test
+    void readFile_ShouldReturnPartialContentForRange() throws Exception {
+        Instant lastModified = Instant.parse("2024-01-15T10:00:00Z");
+        when(fileSystem.getMetadata("video.mp4")).thenReturn(FileMetadata.builder()
+                .name("video.mp4")
+                .path("video.mp4")
+                .size(100L)
+                .lastModifiedTime(lastModified)
+                .build());
+        when(fileSystem.readFile("video.mp4", 10L, 20L))
+                .thenReturn(new ByteArrayInputStream("0123456789abcdefghij".getBytes()));
+
+        mockMvc.perform(get("/api/v1/fs/file")
+                        .param("path", "video.mp4")
+                        .header("Range", "bytes=10-29"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 10-29/100"))
+                .andExpect(header().string("Content-Length", "20"))
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(content().string("0123456789abcdefghij"));
+
+        // A matching If-Range date keeps the range
+        mockMvc.perform(get("/api/v1/fs/file")
+                        .param("path", "video.mp4")
+                        .header("Range", "bytes=-20")
+                        .header("If-Range", "Mon, 15 Jan 2024 10:00:00 GMT"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 80-99/100"));
+    }
+
+    @Test
+    void readFile_ShouldReturnWholeFileWhenIfRangeDoesNotMatch() throws Exception {
+        when(fileSystem.getMetadata("video.mp4")).thenReturn(FileMetadata.builder()
+                .name("video.mp4")
+                .path("video.mp4")
+                .size(13L)
+                .lastModifiedTime(Instant.parse("2024-01-15T10:00:00Z"))
+                .build());
+        when(fileSystem.readFile("video.mp4"))
+                .thenReturn(new ByteArrayInputStream("Hello, World!".getBytes()));
+
+        mockMvc.perform(get("/api/v1/fs/file")
+                        .param("path", "video.mp4")
+                        .header("Range", "bytes=0-4")
+                        .header("If-Range", "Sun, 14 Jan 2024 10:00:00 GMT"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Last-Modified", "Mon, 15 Jan 2024 10:00:00 GMT"))
+                .andExpect(content().string("Hello, World!"));
+    }
+
+    @Test
+    void readFile_ShouldRejectUnsatisfiableRange() throws Exception {
+        when(fileSystem.getMetadata("small.txt")).thenReturn(FileMetadata.builder()
+                .name("small.txt")
+                .path("small.txt")
+                .size(13L)
+                .build());
+
+        mockMvc.perform(get("/api/v1/fs/file")
+                        .param("path", "small.txt")
+                        .header("Range", "bytes=100-200"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string("Content-Range", "bytes */13"));
+    }
+
     @Test
     void writeFile_ShouldReturnUpdatedMetadata() throws Exception {
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
@@ -118,6 +300,70 @@ class FileSystemControllerTest {
                 .andExpect(jsonPath("$.size").value(13));
     }
 
+    @Test
+    void uploadFile_ShouldPipeRequestBodyIntoBackend() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        when(fileSystem.writeFile("upload.bin", 13L)).thenReturn(outputStream);
+        when(fileSystem.getMetadata("upload.bin")).thenReturn(FileMetadata.builder()
+                .name("upload.bin")
+                .path("upload.bin")
+                .size(13L)
+                .isDirectory(false)
+                .build());
+
+        mockMvc.perform(put("/api/v1/fs/file")
+                        .param("path", "upload.bin")
+                        .contentType("application/octet-stream")
+                        .content("Hello, World!".getBytes()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.path").value("upload.bin"))
+                .andExpect(jsonPath("$.size").value(13));
+
+        assertEquals("Hello, World!", outputStream.toString());
+    }
+
+    @Test
+    void uploadFile_ShouldAbortWriteWhenBodyCannotBeStored() throws Exception {
+        AtomicBoolean aborted = new AtomicBoolean();
+        AtomicBoolean closed = new AtomicBoolean();
+        class FailingUpload extends OutputStream implements Abortable {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Disk full");
+            }
+
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+
+            @Override
+            public void abort() {
+                aborted.set(true);
+            }
+        }
+        when(fileSystem.writeFile("upload.bin", 13L)).thenReturn(new FailingUpload());
+
+        mockMvc.perform(put("/api/v1/fs/file")
+                        .param("path", "upload.bin")
+                        .contentType("application/octet-stream")
+                        .content("Hello, World!".getBytes()))
+                .andExpect(status().isInternalServerError());
+
+        assertTrue(aborted.get());
+        assertFalse(closed.get());
+        verify(fileSystem, never()).getMetadata("upload.bin");
+    }
+
+    @Test
+    void uploadFile_ShouldRejectInvalidPath() throws Exception {
+        mockMvc.perform(put("/api/v1/fs/file")
+                        .param("path", "../escape.bin")
+                        .contentType("application/octet-stream")
+                        .content("data".getBytes()))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void list_ShouldReturnDirectoryContents() throws Exception {
         FileMetadata file1 = FileMetadata.builder()
@@ -280,6 +526,425 @@ class FileSystemControllerTest {
                 .andExpect(jsonPath("$").isEmpty());
     }
 
+    @Test
+    void list_ShouldPassStructuredQueryToFileSystem() throws Exception {
+        when(fileSystem.listRecursive(eq("testDir"), any())).thenReturn(Collections.emptyList());
+
+        mockMvc.perform(get("/api/v1/fs/list")
+                        .param("path", "testDir")
+                        .param("recursive", "true")
+                        .param("filter", "logs/*.log")
+                        .param("extensions", "log,TXT")
+                        .param("minSize", "10")
+                        .param("modifiedAfter", "2024-01-01T00:00:00Z")
+                        .param("type", "files")
+                        .param("maxResults", "5"))
+                .andExpect(status().isOk());
+
+        verify(fileSystem).listRecursive(eq("testDir"), argThat(filter -> filter instanceof FileQuery query
+                && query.getGlob().equals("testDir/logs/*.log")
+                && query.getExtensions().equals(Set.of("log", "txt"))
+                && query.getMinSize() == 10L
+                && query.getModifiedAfter().equals(Instant.parse("2024-01-01T00:00:00Z"))
+                && query.getEntryType() == FileQuery.EntryType.FILES
+                && query.getMaxResults() == 5));
+    }
+
+    @Test
+    void list_WithInvalidQuery_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/v1/fs/list")
+                        .param("path", "testDir")
+                        .param("type", "links"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/api/v1/fs/list")
+                        .param("path", "testDir")
+                        .param("modifiedBefore", "yesterday"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/api/v1/fs/list")
+                        .param("path", "testDir")
+                        .param("filter", "../*"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void list_WithLimit_ShouldReturnPageAndNextCursor() throws Exception {
+        String cursor = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("testDir/file1.txt".getBytes(StandardCharsets.UTF_8));
+        FileMetadata file1 = FileMetadata.builder()
+                .name("file1.txt")
+                .path("testDir/file1.txt")
+                .size(100L)
+                .creationTime(Instant.now())
+                .lastModifiedTime(Instant.now())
+                .isDirectory(false)
+                .build();
+        FileMetadata file2 = FileMetadata.builder()
+                .name("file2.txt")
+                .path("testDir/file2.txt")
+                .size(200L)
+                .creationTime(Instant.now())
+                .lastModifiedTime(Instant.now())
+                .isDirectory(false)
+                .build();
+
+        when(fileSystem.listPage(eq("testDir"), eq(false), any(), isNull(), eq(1)))
+                .thenReturn(FileListPage.builder()
+                        .items(Collections.singletonList(file1))
+                        .nextCursor("testDir/file1.txt")
+                        .build());
+        when(fileSystem.listPage(eq("testDir"), eq(false), any(), eq("testDir/file1.txt"), eq(1)))
+                .thenReturn(FileListPage.builder()
+                        .items(Collections.singletonList(file2))
+                        .build());
+
+        mockMvc.perform(get("/api/v1/fs/list")
+                        .param("path", "testDir")
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", cursor))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].name").value("file1.txt"));
+
+        mockMvc.perform(get("/api/v1/fs/list")
+                        .param("path", "testDir")
+                        .param("limit", "1")
+                        .param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$[0].name").value("file2.txt"));
+    }
+
+    @Test
+    void list_WithNonLatinCursor_ShouldRoundTripThroughHeader() throws Exception {
+        FileMetadata file = FileMetadata.builder()
+                .name("résumé-日本.txt")
+                .path("testDir/résumé-日本.txt")
+                .isDirectory(false)
+                .build();
+        when(fileSystem.listPage(eq("testDir"), eq(false), any(), isNull(), eq(1)))
+                .thenReturn(FileListPage.builder()
+                        .items(Collections.singletonList(file))
+                        .nextCursor(file.getPath())
+                        .build());
+        when(fileSystem.listPage(eq("testDir"), eq(false), any(), eq(file.getPath()), eq(1)))
+                .thenReturn(FileListPage.builder().items(Collections.emptyList()).build());
+
+        String cursor = mockMvc.perform(get("/api/v1/fs/list")
+                        .param("path", "testDir")
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("X-Next-Cursor");
+
+        assertTrue(cursor.matches("[A-Za-z0-9_-]+"), cursor);
+        mockMvc.perform(get("/api/v1/fs/list")
+                        .param("path", "testDir")
+                        .param("limit", "1")
+                        .param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+        mockMvc.perform(get("/api/v1/fs/list")
+                        .param("path", "testDir")
+                        .param("limit", "1")
+                        .param("cursor", "not/base64"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void list_WithInvalidLimit_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/v1/fs/list")
+                        .param("path", "testDir")
+                        .param("limit", "0"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/api/v1/fs/list")
+                        .param("path", "testDir")
+                        .param("limit", "10001"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void archive_ShouldStreamDirectoryAsZip() throws Exception {
+        FileMetadata nested = FileMetadata.builder()
+                .name("nested")
+                .path("photos/nested")
+                .isDirectory(true)
+                .build();
+        FileMetadata file = FileMetadata.builder()
+                .name("a.txt")
+                .path("photos/nested/a.txt")
+                .size(5L)
+                .lastModifiedTime(Instant.now())
+                .isDirectory(false)
+                .build();
+        when(fileSystem.listStream(eq("photos"), eq(true), isNull())).thenReturn(Stream.of(nested, file));
+        when(fileSystem.readFile("photos/nested/a.txt")).thenReturn(new ByteArrayInputStream("hello".getBytes()));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/fs/archive")
+                        .param("path", "photos"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        byte[] archive = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/zip"))
+                .andExpect(header().string("Content-Disposition", containsString("photos.zip")))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        List<String> names = new ArrayList<>();
+        String content = null;
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            for (ZipEntry entry; (entry = zip.getNextEntry()) != null; ) {
+                names.add(entry.getName());
+                if (!entry.isDirectory()) {
+                    content = new String(zip.readAllBytes());
+                }
+            }
+        }
+        assertEquals(List.of("photos/", "photos/nested/", "photos/nested/a.txt"), names);
+        assertEquals("hello", content);
+    }
+
+    @Test
+    void archive_ShouldStreamDirectoryAsTar() throws Exception {
+        FileMetadata file = FileMetadata.builder()
+                .name("a.txt")
+                .path("photos/a.txt")
+                .size(5L)
+                .isDirectory(false)
+                .build();
+        when(fileSystem.listStream(eq("photos"), eq(true), isNull())).thenReturn(Stream.of(file));
+        when(fileSystem.readFile("photos/a.txt")).thenReturn(new ByteArrayInputStream("hello".getBytes()));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/fs/archive")
+                        .param("path", "photos")
+                        .param("format", "tar"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        byte[] archive = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-tar"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // Root directory header, file header, one block of content and the two end-of-archive blocks
+        assertEquals(5 * 512, archive.length);
+        assertEquals("photos/a.txt", new String(archive, 512, 12));
+        assertEquals("hello", new String(archive, 1024, 5));
+    }
+
+    @Test
+    void archive_WithInvalidFormat_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/v1/fs/archive")
+                        .param("path", "photos")
+                        .param("format", "rar"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void search_ShouldQueryMetadataIndex() throws Exception {
+        FileMetadata match = FileMetadata.builder()
+                .name("a.log")
+                .path("logs/a.log")
+                .size(2048L)
+                .isDirectory(false)
+                .build();
+        when(metadataIndex.search(eq("logs/"), any(), anyInt())).thenReturn(List.of(match));
+
+        mockMvc.perform(get("/api/v1/fs/search")
+                        .param("prefix", "logs/")
+                        .param("filter", "logs/*.log")
+                        .param("minSize", "1024")
+                        .param("limit", "50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].path").value("logs/a.log"));
+
+        verify(metadataIndex).search(eq("logs/"), argThat(filter -> filter instanceof FileQuery query
+                && query.getGlob().equals("logs/*.log")
+                && query.getMinSize() == 1024L), eq(50));
+    }
+
+    @Test
+    void search_WithInvalidPrefix_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/v1/fs/search")
+                        .param("prefix", "../etc"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void listStream_ShouldWriteNewlineDelimitedJson() throws Exception {
+        FileMetadata file1 = FileMetadata.builder()
+                .name("file1.txt")
+                .path("root/file1.txt")
+                .size(100L)
+                .creationTime(Instant.now())
+                .lastModifiedTime(Instant.now())
+                .isDirectory(false)
+                .build();
+        FileMetadata file2 = FileMetadata.builder()
+                .name("file2.txt")
+                .path("root/subDir/file2.txt")
+                .size(200L)
+                .creationTime(Instant.now())
+                .lastModifiedTime(Instant.now())
+                .isDirectory(false)
+                .build();
+        AtomicBoolean closed = new AtomicBoolean();
+        when(fileSystem.listStream(eq("root"), eq(true), any()))
+                .thenReturn(Stream.of(file1, file2).onClose(() -> closed.set(true)));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/fs/list")
+                        .param("path", "root")
+                        .param("recursive", "true")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"name\":\"file1.txt\""));
+        assertTrue(lines[1].contains("\"name\":\"file2.txt\""));
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void listStream_ShouldRejectInvalidPathBeforeStreaming() throws Exception {
+        mockMvc.perform(get("/api/v1/fs/list")
+                        .param("path", "../etc")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void batch_ShouldStreamResultsInRequestOrder() throws Exception {
+        FileMetadata created = FileMetadata.builder()
+                .name("new.txt")
+                .path("dir/new.txt")
+                .isDirectory(false)
+                .build();
+        when(fileSystem.createFile("dir/new.txt")).thenReturn(created);
+        when(fileSystem.deleteAll(List.of("dir/a.txt", "dir/b.txt")))
+                .thenReturn(Map.of("dir/b.txt", new PathNotFoundException("dir/b.txt")));
+        when(fileSystem.getMetadata("dir/missing.txt")).thenThrow(new PathNotFoundException("dir/missing.txt"));
+
+        String operations = """
+                [{"op":"create","path":"dir/new.txt"},
+                 {"op":"delete","path":"dir/a.txt"},
+                 {"op":"delete","path":"dir/b.txt"},
+                 {"op":"getMetadata","path":"dir/missing.txt"},
+                 {"op":"rename","path":"dir/new.txt","newName":"../escape"},
+                 {"op":"chmod","path":"dir/new.txt"}]
+                """;
+        MvcResult result = mockMvc.perform(post("/api/v1/fs/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(operations))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(6, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            assertTrue(lines[i].contains("\"index\":" + i + ","), lines[i]);
+        }
+        assertTrue(lines[0].contains("\"status\":200") && lines[0].contains("\"name\":\"new.txt\""));
+        assertTrue(lines[1].contains("\"status\":204"));
+        assertTrue(lines[2].contains("\"status\":404"));
+        assertTrue(lines[3].contains("\"status\":404"));
+        assertTrue(lines[4].contains("\"status\":400"));
+        assertTrue(lines[5].contains("\"status\":400"));
+        verify(fileSystem, never()).rename(any(), any());
+    }
+
+    @Test
+    void batch_ShouldAcceptNewlineDelimitedJson() throws Exception {
+        when(fileSystem.deleteAll(List.of("a.txt"))).thenReturn(Map.of());
+
+        MvcResult result = mockMvc.perform(post("/api/v1/fs/batch")
+                        .param("concurrency", "1")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"op\":\"mkdir\",\"path\":\"dir\"}\n{\"op\":\"delete\",\"path\":\"a.txt\"}\n"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"op\":\"mkdir\""));
+        assertTrue(lines[1].contains("\"op\":\"delete\"") && lines[1].contains("\"status\":204"));
+        verify(fileSystem).createDirectory("dir");
+    }
+
+    @Test
+    void batch_ShouldRunOperationsOnNestedPathsInRequestOrder() throws Exception {
+        AtomicBoolean madeDirectory = new AtomicBoolean();
+        AtomicBoolean createdFile = new AtomicBoolean();
+        FileMetadata metadata = FileMetadata.builder().name("x").path("a/x").isDirectory(false).build();
+        when(fileSystem.createDirectory("a")).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            madeDirectory.set(true);
+            return FileMetadata.builder().name("a").path("a").isDirectory(true).build();
+        });
+        when(fileSystem.createFile("a/x")).thenAnswer(invocation -> {
+            if (!madeDirectory.get()) {
+                throw new PathNotFoundException("a");
+            }
+            Thread.sleep(100);
+            createdFile.set(true);
+            return metadata;
+        });
+        when(fileSystem.move("a/x", "b/x")).thenAnswer(invocation -> {
+            if (!createdFile.get()) {
+                throw new PathNotFoundException("a/x");
+            }
+            return metadata;
+        });
+
+        MvcResult result = mockMvc.perform(post("/api/v1/fs/batch")
+                        .param("concurrency", "16")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"op":"mkdir","path":"a"},
+                                 {"op":"create","path":"a/x"},
+                                 {"op":"move","path":"a/x","destination":"b/x"}]
+                                """))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(3, lines.length);
+        for (String line : lines) {
+            assertTrue(line.contains("\"status\":200"), line);
+        }
+    }
+
+    @Test
+    void batch_WithInvalidConcurrency_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(post("/api/v1/fs/batch")
+                        .param("concurrency", "0")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void health_ShouldReturnStatus() throws Exception {
         when(fileSystem.isHealthy()).thenReturn(true);
@@ -336,6 +1001,10 @@ class FileSystemControllerTest {
     @Test
     void testReadNonExistentFile() throws Exception {
         String nonExistentFile = "nonexistent.txt";
+        when(fileSystem.getMetadata(nonExistentFile)).thenReturn(FileMetadata.builder()
+                .name(nonExistentFile)
+                .path(nonExistentFile)
+                .build());
         when(fileSystem.readFile(nonExistentFile))
             .thenReturn(new ByteArrayInputStream("File not found".getBytes()));
         
@@ -415,6 +1084,34 @@ class FileSystemControllerTest {
                 .andExpect(jsonPath("$", hasSize(0)));
     }
 
+    @Test
+    void copy_ShouldReturnMetadataOfCopy() throws Exception {
+        FileMetadata copy = FileMetadata.builder()
+                .name("copy.txt")
+                .path("dir/copy.txt")
+                .size(42L)
+                .isDirectory(false)
+                .build();
+        when(fileSystem.copy("dir/source.txt", "dir/copy.txt")).thenReturn(copy);
+
+        mockMvc.perform(post("/api/v1/fs/copy")
+                        .param("sourcePath", "dir/source.txt")
+                        .param("destinationPath", "dir/copy.txt"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.path").value("dir/copy.txt"))
+                .andExpect(jsonPath("$.size").value(42));
+    }
+
+    @Test
+    void copy_ShouldReturnNotFoundForMissingSource() throws Exception {
+        when(fileSystem.copy("missing.txt", "copy.txt")).thenThrow(new PathNotFoundException("missing.txt"));
+
+        mockMvc.perform(post("/api/v1/fs/copy")
+                        .param("sourcePath", "missing.txt")
+                        .param("destinationPath", "copy.txt"))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void testMoveToExistingFile() throws Exception {
         String sourcePath = "source.txt";
@@ -1,13 +1,20 @@
 package net.sanyal.fshandler.core;
 
+import net.sanyal.fshandler.core.model.FileListPage;
 import net.sanyal.fshandler.core.model.FileMetadata;
+import net.sanyal.fshandler.core.model.FileQuery;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.AfterEach;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import static org.junit.jupiter.api.Assertions.*;
 
 public abstract class AbstractFileSystemTest {
@@ -63,6 +70,21 @@ public abstract class AbstractFileSystemTest {
         }
     }
 
+    @Test
+    void readFileRange_ShouldReturnRequestedBytes() throws IOException {
+        String testPath = "range.txt";
+        try (OutputStream os = getFileSystem().writeFile(testPath)) {
+            os.write("0123456789".getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (InputStream is = getFileSystem().readFile(testPath, 3, 4)) {
+            assertEquals("3456", new String(is.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        try (InputStream is = getFileSystem().readFile(testPath, 8, 100)) {
+            assertEquals("89", new String(is.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
     @Test
     void move_ShouldMoveFile() {
         String sourcePath = "source.txt";
@@ -75,6 +97,38 @@ public abstract class AbstractFileSystemTest {
         assertThrows(RuntimeException.class, () -> getFileSystem().getMetadata(sourcePath));
     }
 
+    @Test
+    void move_ShouldMoveDirectoryTree() {
+        getFileSystem().createFile("tree/a.txt");
+        getFileSystem().createFile("tree/nested/b.txt");
+
+        FileMetadata moved = getFileSystem().move("tree", "archive/tree");
+
+        assertTrue(moved.isDirectory());
+        assertEquals("archive/tree", moved.getPath());
+        assertEquals("b.txt", getFileSystem().getMetadata("archive/tree/nested/b.txt").getName());
+        assertEquals("a.txt", getFileSystem().getMetadata("archive/tree/a.txt").getName());
+        assertThrows(PathNotFoundException.class, () -> getFileSystem().getMetadata("tree/a.txt"));
+        assertThrows(PathNotFoundException.class, () -> getFileSystem().getMetadata("tree/nested/b.txt"));
+    }
+
+    @Test
+    void copy_ShouldCopyFileAndKeepSource() throws IOException {
+        try (OutputStream os = getFileSystem().writeFile("copy/source.txt")) {
+            os.write("copied content".getBytes(StandardCharsets.UTF_8));
+        }
+
+        FileMetadata copy = getFileSystem().copy("copy/source.txt", "copy/nested/target.txt");
+
+        assertEquals("copy/nested/target.txt", copy.getPath());
+        assertEquals(14, copy.getSize());
+        try (InputStream is = getFileSystem().readFile("copy/nested/target.txt")) {
+            assertEquals("copied content", new String(is.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals(14, getFileSystem().getMetadata("copy/source.txt").getSize());
+        assertThrows(PathNotFoundException.class, () -> getFileSystem().copy("copy/missing.txt", "copy/other.txt"));
+    }
+
     @Test
     void delete_ShouldDeleteFileOrDirectory() {
         String filePath = "test.txt";
@@ -90,6 +144,27 @@ public abstract class AbstractFileSystemTest {
         assertThrows(RuntimeException.class, () -> getFileSystem().getMetadata(dirPath));
     }
 
+    @Test
+    void deleteAll_ShouldDeleteEveryPath() {
+        getFileSystem().createFile("batch/a.txt");
+        getFileSystem().createFile("batch/b.txt");
+        getFileSystem().createFile("batch/c.txt");
+
+        Map<String, RuntimeException> failures = getFileSystem().deleteAll(List.of("batch/a.txt", "batch/b.txt"));
+
+        assertTrue(failures.isEmpty());
+        assertThrows(PathNotFoundException.class, () -> getFileSystem().getMetadata("batch/a.txt"));
+        assertThrows(PathNotFoundException.class, () -> getFileSystem().getMetadata("batch/b.txt"));
+        assertEquals("c.txt", getFileSystem().getMetadata("batch/c.txt").getName());
+    }
+
+    @Test
+    void missingPath_ShouldThrowPathNotFoundException() {
+        assertThrows(PathNotFoundException.class, () -> getFileSystem().getMetadata("missing.txt"));
+        assertThrows(PathNotFoundException.class, () -> getFileSystem().readFile("missing.txt"));
+        assertThrows(PathNotFoundException.class, () -> getFileSystem().readFile("missing.txt", 0, 10));
+    }
+
     @Test
     void list_ShouldListDirectoryContents() throws IOException {
         String dirPath = "testDir";
@@ -106,6 +181,23 @@ public abstract class AbstractFileSystemTest {
         assertTrue(contents.stream().anyMatch(m -> m.getName().equals("file2.txt")));
     }
 
+    @Test
+    void list_ShouldIncludeSubdirectories() {
+        getFileSystem().createFile("listing/file.txt");
+        getFileSystem().createFile("listing/nested/deeper/file.txt");
+
+        List<FileMetadata> contents = getFileSystem().list("listing", null);
+        assertEquals(2, contents.size());
+        assertTrue(contents.stream().anyMatch(m -> m.getName().equals("file.txt") && !m.isDirectory()));
+        assertTrue(contents.stream().anyMatch(m -> m.getPath().equals("listing/nested") && m.isDirectory()));
+
+        FileListPage page = getFileSystem().listPage("listing", false, null, null, 1);
+        FileListPage next = getFileSystem().listPage("listing", false, null, page.getNextCursor(), 1);
+        assertEquals("file.txt", page.getItems().get(0).getName());
+        assertEquals("nested", next.getItems().get(0).getName());
+        assertNull(next.getNextCursor());
+    }
+
     @Test
     void listRecursive_ShouldListRecursively() throws IOException {
         String dirPath = "testDir";
@@ -131,6 +223,116 @@ public abstract class AbstractFileSystemTest {
         assertTrue(contents.stream().anyMatch(m -> m.getName().equals("file2.txt") && !m.isDirectory()));
     }
 
+    @Test
+    void listPage_ShouldPageThroughDirectory() {
+        String dirPath = "testDir";
+        getFileSystem().createDirectory(dirPath);
+        getFileSystem().createFile(dirPath + "/file1.txt");
+        getFileSystem().createFile(dirPath + "/file2.txt");
+        getFileSystem().createFile(dirPath + "/file3.txt");
+
+        FileListPage first = getFileSystem().listPage(dirPath, false, null, null, 2);
+        assertEquals(2, first.getItems().size());
+        assertNotNull(first.getNextCursor());
+
+        FileListPage second = getFileSystem().listPage(dirPath, false, null, first.getNextCursor(), 2);
+        assertEquals(1, second.getItems().size());
+        assertNull(second.getNextCursor());
+
+        List<String> names = new ArrayList<>();
+        first.getItems().forEach(m -> names.add(m.getName()));
+        second.getItems().forEach(m -> names.add(m.getName()));
+        assertEquals(List.of("file1.txt", "file2.txt", "file3.txt"), names);
+    }
+
+    @Test
+    void listPage_Recursive_ShouldReturnSameEntriesAsListRecursive() {
+        String dirPath = "testDir";
+        getFileSystem().createDirectory(dirPath);
+        getFileSystem().createDirectory(dirPath + "/a");
+        getFileSystem().createDirectory(dirPath + "/b");
+        getFileSystem().createFile(dirPath + "/a/file1.txt");
+        getFileSystem().createFile(dirPath + "/a/file2.txt");
+        getFileSystem().createFile(dirPath + "/b/file3.txt");
+        getFileSystem().createFile(dirPath + "/file4.txt");
+
+        Set<String> paged = new HashSet<>();
+        String cursor = null;
+        do {
+            FileListPage page = getFileSystem().listPage(dirPath, true, null, cursor, 2);
+            assertTrue(page.getItems().size() <= 2);
+            page.getItems().forEach(m -> assertTrue(paged.add(m.getPath()), "Duplicate entry " + m.getPath()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        Set<String> expected = getFileSystem().listRecursive(dirPath, null).stream()
+            .map(FileMetadata::getPath)
+            .collect(Collectors.toSet());
+        assertEquals(expected, paged);
+    }
+
+    @Test
+    void listStream_ShouldReturnSameEntriesAsList() {
+        String dirPath = "testDir";
+        getFileSystem().createDirectory(dirPath);
+        getFileSystem().createDirectory(dirPath + "/subDir");
+        getFileSystem().createFile(dirPath + "/file1.txt");
+        getFileSystem().createFile(dirPath + "/subDir/file2.txt");
+        getFileSystem().createFile(dirPath + "/subDir/file3.java");
+
+        Set<String> expected = getFileSystem().listRecursive(dirPath, null).stream()
+            .map(FileMetadata::getPath)
+            .collect(Collectors.toSet());
+        try (Stream<FileMetadata> stream = getFileSystem().listStream(dirPath, true, null)) {
+            assertEquals(expected, stream.map(FileMetadata::getPath).collect(Collectors.toSet()));
+        }
+
+        try (Stream<FileMetadata> stream = getFileSystem().listStream(dirPath, true, m -> m.getName().endsWith(".txt"))) {
+            assertEquals(Set.of("file1.txt", "file2.txt"),
+                stream.map(FileMetadata::getName).collect(Collectors.toSet()));
+        }
+
+        try (Stream<FileMetadata> stream = getFileSystem().listStream(dirPath, false, m -> !m.isDirectory())) {
+            assertEquals(List.of("file1.txt"), stream.map(FileMetadata::getName).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void listRecursive_ShouldApplyFileQuery() throws IOException {
+        getFileSystem().createFile("query/2023-12/app.log");
+        getFileSystem().createFile("query/2024-01/app.log");
+        getFileSystem().createFile("query/2024-01/app.txt");
+        getFileSystem().createFile("query/2024-02/app.log");
+        getFileSystem().createFile("query/2024-02/nested/app.log");
+        try (OutputStream os = getFileSystem().writeFile("query/2024-02/big.log")) {
+            os.write(new byte[100]);
+        }
+
+        FileQuery byPath = FileQuery.builder().glob("query/2024-*/*.log").build();
+        Set<String> matched = getFileSystem().listRecursive("query", byPath).stream()
+            .map(FileMetadata::getPath)
+            .collect(Collectors.toSet());
+        assertEquals(Set.of("query/2024-01/app.log", "query/2024-02/app.log", "query/2024-02/big.log"), matched);
+
+        FileQuery bySize = FileQuery.builder()
+            .extensions(Set.of("LOG"))
+            .minSize(1L)
+            .entryType(FileQuery.EntryType.FILES)
+            .build();
+        List<FileMetadata> large = getFileSystem().listRecursive("query", bySize);
+        assertEquals(1, large.size());
+        assertEquals("big.log", large.get(0).getName());
+
+        FileQuery capped = FileQuery.builder().glob("*.log").maxResults(2).build();
+        assertEquals(2, getFileSystem().listRecursive("query", capped).size());
+        try (Stream<FileMetadata> stream = getFileSystem().listStream("query", true, capped)) {
+            assertEquals(2, stream.count());
+        }
+
+        FileQuery direct = FileQuery.builder().glob("query/2024-0*").entryType(FileQuery.EntryType.DIRECTORIES).build();
+        assertEquals(2, getFileSystem().list("query", direct).size());
+    }
+
     @Test
     void list_ShouldFilterCorrectly() throws IOException {
         String txtFile1 = "test1.txt";
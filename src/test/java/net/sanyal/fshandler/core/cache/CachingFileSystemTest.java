@@ -0,0 +1,149 @@
+package net.sanyal.fshandler.core.cache;
+
+import net.sanyal.fshandler.core.FileSystem;
+import net.sanyal.fshandler.core.PathNotFoundException;
+import net.sanyal.fshandler.core.config.MetadataCacheConfig;
+import net.sanyal.fshandler.core.model.FileMetadata;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CachingFileSystemTest {
+    private FileSystem delegate;
+    private AtomicLong clock;
+    private CachingFileSystem fileSystem;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(FileSystem.class);
+        clock = new AtomicLong();
+        fileSystem = new CachingFileSystem(delegate, MetadataCacheConfig.builder()
+                .maxEntries(2)
+                .ttlMillis(1000)
+                .build(), clock::get);
+        when(delegate.getMetadata(anyString())).thenAnswer(invocation -> metadata(invocation.getArgument(0)));
+    }
+
+    private static FileMetadata metadata(String path) {
+        return FileMetadata.builder()
+                .name(path.substring(path.lastIndexOf('/') + 1))
+                .path(path)
+                .size(1L)
+                .creationTime(Instant.EPOCH)
+                .lastModifiedTime(Instant.EPOCH)
+                .isDirectory(false)
+                .build();
+    }
+
+    @Test
+    void getMetadata_ShouldServeRepeatedLookupsFromCacheUntilExpiry() {
+        fileSystem.getMetadata("a.txt");
+        fileSystem.getMetadata("a.txt");
+        verify(delegate, times(1)).getMetadata("a.txt");
+        assertEquals(1, fileSystem.getHitCount());
+        assertEquals(1, fileSystem.getMissCount());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        fileSystem.getMetadata("a.txt");
+        verify(delegate, times(2)).getMetadata("a.txt");
+        assertEquals(2, fileSystem.getMissCount());
+    }
+
+    @Test
+    void getMetadata_ShouldEvictLeastRecentlyUsedEntryWhenFull() {
+        fileSystem.getMetadata("a.txt");
+        fileSystem.getMetadata("b.txt");
+        fileSystem.getMetadata("a.txt");
+        fileSystem.getMetadata("c.txt");
+
+        assertEquals(1, fileSystem.getEvictionCount());
+        assertEquals(2, fileSystem.size());
+        fileSystem.getMetadata("a.txt");
+        verify(delegate, times(1)).getMetadata("a.txt");
+        fileSystem.getMetadata("b.txt");
+        verify(delegate, times(2)).getMetadata("b.txt");
+    }
+
+    @Test
+    void writeFile_ShouldInvalidateOnOpenAndClose() throws IOException {
+        when(delegate.writeFile("a.txt")).thenReturn(new ByteArrayOutputStream());
+        fileSystem.getMetadata("a.txt");
+
+        OutputStream os = fileSystem.writeFile("a.txt");
+        fileSystem.getMetadata("a.txt");
+        verify(delegate, times(2)).getMetadata("a.txt");
+
+        os.write(42);
+        os.close();
+        fileSystem.getMetadata("a.txt");
+        verify(delegate, times(3)).getMetadata("a.txt");
+    }
+
+    @Test
+    void missingPaths_ShouldBeAnsweredFromCacheUntilCreated() {
+        fileSystem = new CachingFileSystem(delegate, MetadataCacheConfig.builder()
+                .ttlMillis(1000)
+                .negativeTtlMillis(100)
+                .build(), clock::get);
+        when(delegate.getMetadata("dir/a.txt"))
+                .thenThrow(new PathNotFoundException("dir/a.txt"))
+                .thenThrow(new PathNotFoundException("dir/a.txt"))
+                .thenReturn(metadata("dir/a.txt"));
+        when(delegate.getMetadata("dir")).thenThrow(new PathNotFoundException("dir"));
+        when(delegate.readFile("dir/b.txt")).thenThrow(new PathNotFoundException("dir/b.txt"));
+
+        assertThrows(PathNotFoundException.class, () -> fileSystem.getMetadata("dir/a.txt"));
+        assertThrows(PathNotFoundException.class, () -> fileSystem.getMetadata("dir/a.txt"));
+        assertThrows(PathNotFoundException.class, () -> fileSystem.readFile("dir/a.txt"));
+        verify(delegate, times(1)).getMetadata("dir/a.txt");
+        verify(delegate, never()).readFile("dir/a.txt");
+        assertThrows(PathNotFoundException.class, () -> fileSystem.readFile("dir/b.txt"));
+        assertThrows(PathNotFoundException.class, () -> fileSystem.readFile("dir/b.txt"));
+        verify(delegate, times(1)).readFile("dir/b.txt");
+
+        // Misses expire sooner than hits
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThrows(PathNotFoundException.class, () -> fileSystem.getMetadata("dir/a.txt"));
+        verify(delegate, times(2)).getMetadata("dir/a.txt");
+
+        // Creating a path forgets that it and the directories above it were missing
+        assertThrows(PathNotFoundException.class, () -> fileSystem.getMetadata("dir"));
+        fileSystem.createFile("dir/a.txt");
+        fileSystem.getMetadata("dir/a.txt");
+        verify(delegate, times(3)).getMetadata("dir/a.txt");
+        assertThrows(PathNotFoundException.class, () -> fileSystem.getMetadata("dir"));
+        verify(delegate, times(2)).getMetadata("dir");
+    }
+
+    @Test
+    void mutations_ShouldInvalidateAffectedPaths() {
+        fileSystem = new CachingFileSystem(delegate, MetadataCacheConfig.builder().build(), clock::get);
+        fileSystem.getMetadata("dir/a.txt");
+        fileSystem.getMetadata("dir/sub/b.txt");
+        fileSystem.getMetadata("other.txt");
+        fileSystem.getMetadata("renamed.txt");
+
+        fileSystem.move("dir", "moved");
+        assertEquals(2, fileSystem.size());
+
+        fileSystem.rename("other.txt", "renamed.txt");
+        assertEquals(0, fileSystem.size());
+
+        fileSystem.getMetadata("new.txt");
+        fileSystem.createFile("new.txt");
+        fileSystem.getMetadata("new.txt");
+        verify(delegate, times(2)).getMetadata("new.txt");
+
+        fileSystem.delete("new.txt");
+        assertEquals(0, fileSystem.size());
+    }
+}
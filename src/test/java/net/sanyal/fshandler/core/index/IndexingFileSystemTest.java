@@ -0,0 +1,83 @@
+package net.sanyal.fshandler.core.index;
+
+import net.sanyal.fshandler.core.config.LocalFileSystemConfig;
+import net.sanyal.fshandler.core.config.MetadataIndexConfig;
+import net.sanyal.fshandler.core.model.FileMetadata;
+import net.sanyal.fshandler.local.LocalFileSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexingFileSystemTest {
+    @TempDir
+    Path baseDir;
+    @TempDir
+    Path indexDir;
+    private MetadataIndex index;
+    private IndexingFileSystem fileSystem;
+
+    @BeforeEach
+    void setUp() {
+        index = new MetadataIndex(indexDir);
+        fileSystem = new IndexingFileSystem(new LocalFileSystem(LocalFileSystemConfig.builder()
+                .basePath(baseDir.toString())
+                .maxConnections(10)
+                .timeoutMillis(5000)
+                .build()), index, MetadataIndexConfig.builder()
+                .directory(indexDir.toString())
+                .rebuildIntervalMillis(0)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        fileSystem.close();
+        index.close();
+    }
+
+    private List<String> indexedPaths() {
+        return index.search(null, null, 1000).stream().map(FileMetadata::getPath).toList();
+    }
+
+    @Test
+    void mutations_ShouldBeMirroredIntoIndex() throws IOException {
+        fileSystem.createDirectory("dir");
+        try (OutputStream out = fileSystem.writeFile("dir/a.txt")) {
+            out.write("hello".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(5, index.get("dir/a.txt").getSize());
+
+        fileSystem.move("dir", "moved");
+        assertTrue(indexedPaths().containsAll(List.of("moved", "moved/a.txt")));
+        assertFalse(indexedPaths().contains("dir/a.txt"));
+
+        fileSystem.rename("moved/a.txt", "b.txt");
+        assertTrue(indexedPaths().contains("moved/b.txt"));
+
+        fileSystem.delete("moved");
+        assertFalse(indexedPaths().stream().anyMatch(path -> path.startsWith("moved")));
+    }
+
+    @Test
+    void rebuild_ShouldPickUpChangesMadeOutsideTheFileSystem() throws IOException {
+        Files.createDirectories(baseDir.resolve("external"));
+        Files.writeString(baseDir.resolve("external/x.txt"), "x");
+
+        // The initial scan of an empty index may already be running in the background
+        while (!fileSystem.rebuild()) {
+            Thread.onSpinWait();
+        }
+
+        assertTrue(indexedPaths().containsAll(List.of("external", "external/x.txt")));
+    }
+}
@@ -0,0 +1,131 @@
+package net.sanyal.fshandler.core.index;
+
+import net.sanyal.fshandler.core.model.FileMetadata;
+import net.sanyal.fshandler.core.model.FileQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetadataIndexTest {
+    @TempDir
+    Path indexDir;
+    private MetadataIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new MetadataIndex(indexDir);
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.close();
+    }
+
+    private static FileMetadata file(String path, long size, long modifiedSeconds) {
+        return FileMetadata.builder()
+                .name(path.substring(path.lastIndexOf('/') + 1))
+                .path(path)
+                .size(size)
+                .creationTime(Instant.ofEpochSecond(modifiedSeconds))
+                .lastModifiedTime(Instant.ofEpochSecond(modifiedSeconds, 123))
+                .isDirectory(false)
+                .build();
+    }
+
+    private static List<String> paths(List<FileMetadata> entries) {
+        return entries.stream().map(FileMetadata::getPath).toList();
+    }
+
+    @Test
+    void search_ShouldAnswerPrefixGlobSizeAndTimeQueries() {
+        index.put(file("logs/2024-01/a.log", 10, 100));
+        index.put(file("logs/2024-02/b.log", 2000, 200));
+        index.put(file("logs/2024-02/c.txt", 30, 300));
+        index.put(file("logs2/d.log", 40, 400));
+        index.put(file("data/e.bin", 5000, 500));
+
+        assertEquals(List.of("logs/2024-01/a.log", "logs/2024-02/b.log", "logs/2024-02/c.txt"),
+                paths(index.search("logs/", null, 100)));
+        assertEquals(List.of("logs/2024-02/b.log"),
+                paths(index.search(null, FileQuery.builder().glob("logs/2024-0*/*.log").minSize(1000L).build(), 100)));
+        assertEquals(List.of("logs/2024-02/b.log", "data/e.bin"),
+                paths(index.search(null, FileQuery.builder().minSize(1000L).build(), 100)));
+        assertEquals(List.of("logs/2024-02/c.txt", "logs2/d.log"),
+                paths(index.search(null, FileQuery.builder()
+                        .modifiedAfter(Instant.ofEpochSecond(250))
+                        .modifiedBefore(Instant.ofEpochSecond(400, 124))
+                        .build(), 100)));
+        assertEquals(1, index.search("", null, 1).size());
+        // A prefix is a string, not a directory
+        assertEquals(List.of("logs/2024-01/a.log", "logs/2024-02/b.log", "logs/2024-02/c.txt", "logs2/d.log"),
+                paths(index.search("logs", null, 100)));
+    }
+
+    @Test
+    void put_ShouldRejectNewPathsBeyondLimit() {
+        index.close();
+        index = new MetadataIndex(indexDir, 2);
+        index.put(file("a.txt", 1, 1));
+        index.put(file("b.txt", 1, 1));
+
+        assertThrows(IllegalStateException.class, () -> index.put(file("c.txt", 1, 1)));
+        index.put(file("b.txt", 2, 2));
+        assertEquals(2, index.size());
+        assertEquals(2, index.get("b.txt").getSize());
+
+        index.removeTree("a.txt");
+        index.put(file("c.txt", 1, 1));
+        assertEquals(List.of("b.txt", "c.txt"), paths(index.search(null, null, 100)));
+    }
+
+    @Test
+    void finishRebuild_ShouldKeepPreviousEntriesWhenScanExceedsLimit() {
+        index.close();
+        index = new MetadataIndex(indexDir, 2);
+        index.put(file("kept.txt", 1, 1));
+
+        index.startRebuild();
+        assertThrows(IllegalStateException.class, () -> index.finishRebuild(
+                Stream.of(file("a.txt", 1, 1), file("b.txt", 1, 1), file("c.txt", 1, 1))));
+        index.abortRebuild();
+
+        assertEquals(List.of("kept.txt"), paths(index.search(null, null, 100)));
+    }
+
+    @Test
+    void removeTree_ShouldRemovePathAndEverythingBelow() {
+        index.put(file("dir/a.txt", 1, 1));
+        index.put(file("dir/sub/b.txt", 1, 1));
+        index.put(file("dir2/c.txt", 1, 1));
+
+        index.removeTree("dir");
+
+        assertEquals(List.of("dir2/c.txt"), paths(index.search(null, null, 100)));
+        assertTrue(index.search(null, FileQuery.builder().maxSize(10L).build(), 100).stream()
+                .allMatch(metadata -> metadata.getPath().startsWith("dir2")));
+    }
+
+    @Test
+    void reopen_ShouldRestoreSnapshotAndJournal() {
+        index.startRebuild();
+        index.put(file("written-during-scan.txt", 3, 3));
+        index.finishRebuild(Stream.of(file("a.txt", 1, 1), file("b.txt", 2, 2)));
+        index.put(file("c.txt", 4, 4));
+        index.removeTree("a.txt");
+        index.close();
+
+        index = new MetadataIndex(indexDir);
+
+        assertTrue(index.isLoadedFromDisk());
+        assertEquals(List.of("b.txt", "c.txt", "written-during-scan.txt"), paths(index.search(null, null, 100)));
+        assertEquals(file("c.txt", 4, 4), index.get("c.txt"));
+    }
+}
@@ -0,0 +1,161 @@
+package net.sanyal.fshandler.core.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TarOutputStreamTest {
+    private static final int BLOCK_SIZE = 512;
+    private static final Instant MTIME = Instant.ofEpochSecond(1_700_000_000L);
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final TarOutputStream tar = new TarOutputStream(bytes);
+
+    @Test
+    void putEntry_ShortAsciiName_ShouldWritePlainUstarHeader() throws IOException {
+        tar.putEntry("dir/a.txt", 3, MTIME, false);
+        tar.write("abc".getBytes(StandardCharsets.US_ASCII));
+        tar.finish();
+
+        byte[] archive = bytes.toByteArray();
+        assertEquals(4 * BLOCK_SIZE, archive.length);
+        assertHeader(archive, 0, "dir/a.txt", 3, '0');
+        assertEquals("abc", new String(archive, BLOCK_SIZE, 3, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void putEntry_LongName_ShouldCarryNameInPaxHeader() throws IOException {
+        String name = "deeply/".repeat(20) + "nested.txt";
+        tar.putEntry(name, 2, MTIME, false);
+        tar.write("hi".getBytes(StandardCharsets.US_ASCII));
+        tar.finish();
+
+        byte[] archive = bytes.toByteArray();
+        long extendedLength = assertHeader(archive, 0, name.substring(name.length() - 100), -1, 'x');
+        assertEquals(Map.of("path", name), paxRecords(archive, BLOCK_SIZE, extendedLength));
+        int entry = BLOCK_SIZE + blocks(extendedLength);
+        assertHeader(archive, entry, name.substring(name.length() - 100), 2, '0');
+        assertEquals("hi", new String(archive, entry + BLOCK_SIZE, 2, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void putEntry_NonAsciiName_ShouldCarryUtf8NameInPaxHeader() throws IOException {
+        String name = "données/résumé €.txt";
+        tar.putEntry(name, 0, MTIME, false);
+        tar.putEntry("données", 0, MTIME, true);
+        tar.finish();
+
+        byte[] archive = bytes.toByteArray();
+        long extendedLength = assertHeader(archive, 0, "donn_es/r_sum_ _.txt", -1, 'x');
+        assertEquals(Map.of("path", name), paxRecords(archive, BLOCK_SIZE, extendedLength));
+        int entry = BLOCK_SIZE + blocks(extendedLength);
+        assertHeader(archive, entry, "donn_es/r_sum_ _.txt", 0, '0');
+
+        // Directories get their trailing '/' before the name is checked
+        int directory = entry + BLOCK_SIZE;
+        long directoryExtendedLength = assertHeader(archive, directory, "donn_es/", -1, 'x');
+        assertEquals(Map.of("path", "données/"), paxRecords(archive, directory + BLOCK_SIZE, directoryExtendedLength));
+        assertHeader(archive, directory + BLOCK_SIZE + blocks(directoryExtendedLength), "donn_es/", 0, '5');
+    }
+
+    @Test
+    void putEntry_SizeOf8GbOrMore_ShouldCarrySizeInPaxHeader() throws IOException {
+        long largest = 077777777777L;
+        tar.putEntry("fits.bin", largest, MTIME, false);
+
+        // The content is never written, so only the header is inspected and the stream is not closed
+        byte[] fits = bytes.toByteArray();
+        assertEquals(BLOCK_SIZE, fits.length);
+        assertHeader(fits, 0, "fits.bin", largest, '0');
+
+        bytes.reset();
+        TarOutputStream large = new TarOutputStream(bytes);
+        large.putEntry("large.bin", largest + 1, MTIME, false);
+
+        byte[] archive = bytes.toByteArray();
+        long extendedLength = assertHeader(archive, 0, "large.bin", -1, 'x');
+        assertEquals(Map.of("size", Long.toString(largest + 1)), paxRecords(archive, BLOCK_SIZE, extendedLength));
+        int entry = BLOCK_SIZE + blocks(extendedLength);
+        assertEquals(entry + BLOCK_SIZE, archive.length);
+        // The ustar size field holds 0, readers take the size from the pax header
+        assertHeader(archive, entry, "large.bin", 0, '0');
+    }
+
+    @Test
+    void closeEntry_ShouldFailWhenContentIsShort() throws IOException {
+        tar.putEntry("short.txt", 5, MTIME, false);
+        tar.write('a');
+
+        assertThrows(IOException.class, tar::closeEntry);
+        assertThrows(IOException.class, () -> tar.write(new byte[5]));
+    }
+
+    /**
+     * Checks the ustar header at {@code offset} and returns its size field. A negative
+     * {@code expectedSize} skips the size check.
+     */
+    private static long assertHeader(byte[] archive, int offset, String expectedName, long expectedSize,
+                                     char expectedType) {
+        byte[] header = Arrays.copyOfRange(archive, offset, offset + BLOCK_SIZE);
+        assertEquals(expectedName, field(header, 0, 100));
+        assertEquals("ustar", field(header, 257, 6));
+        assertEquals(expectedType, (char) header[156]);
+        assertEquals(MTIME.getEpochSecond(), octal(header, 136, 12));
+
+        long checksum = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            checksum += i >= 148 && i < 156 ? ' ' : header[i] & 0xff;
+        }
+        assertEquals(checksum, octal(header, 148, 8));
+
+        long size = octal(header, 124, 12);
+        if (expectedSize >= 0) {
+            assertEquals(expectedSize, size);
+        }
+        return size;
+    }
+
+    /** Parses pax records, checking that each one's length prefix counts its own bytes */
+    private static Map<String, String> paxRecords(byte[] archive, int offset, long length) {
+        Map<String, String> records = new LinkedHashMap<>();
+        int position = offset;
+        while (position < offset + length) {
+            int space = position;
+            while (archive[space] != ' ') {
+                space++;
+            }
+            int recordLength = Integer.parseInt(new String(archive, position, space - position, StandardCharsets.US_ASCII));
+            assertEquals('\n', archive[position + recordLength - 1]);
+            String record = new String(archive, space + 1, position + recordLength - space - 2, StandardCharsets.UTF_8);
+            int equals = record.indexOf('=');
+            records.put(record.substring(0, equals), record.substring(equals + 1));
+            position += recordLength;
+        }
+        assertEquals(offset + length, position);
+        return records;
+    }
+
+    private static String field(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.US_ASCII);
+    }
+
+    private static long octal(byte[] header, int offset, int length) {
+        return Long.parseLong(field(header, offset, length).trim(), 8);
+    }
+
+    private static int blocks(long length) {
+        return (int) Math.ceilDiv(length, BLOCK_SIZE) * BLOCK_SIZE;
+    }
+}
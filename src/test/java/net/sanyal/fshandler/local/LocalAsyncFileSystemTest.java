@@ -0,0 +1,102 @@
+package net.sanyal.fshandler.local;
+
+import net.sanyal.fshandler.core.PathNotFoundException;
+import net.sanyal.fshandler.core.cache.CachingFileSystem;
+import net.sanyal.fshandler.core.config.LocalFileSystemConfig;
+import net.sanyal.fshandler.core.config.MetadataCacheConfig;
+import net.sanyal.fshandler.core.model.FileMetadata;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalAsyncFileSystemTest {
+    @TempDir
+    Path tempDir;
+
+    private LocalFileSystem localFileSystem;
+    private LocalAsyncFileSystem fileSystem;
+
+    @BeforeEach
+    void setUp() {
+        LocalFileSystemConfig config = LocalFileSystemConfig.builder()
+                .basePath(tempDir.toString())
+                .maxConnections(4)
+                .timeoutMillis(5000)
+                .build();
+        localFileSystem = new LocalFileSystem(config);
+        fileSystem = new LocalAsyncFileSystem(localFileSystem, Executors.newFixedThreadPool(4));
+    }
+
+    @AfterEach
+    void tearDown() {
+        fileSystem.close();
+    }
+
+    @Test
+    void writeAndReadFile_ShouldRoundTripThroughChannels() throws Exception {
+        ByteBuffer content = ByteBuffer.wrap("Hello, async World!".getBytes(StandardCharsets.UTF_8));
+
+        FileMetadata metadata = fileSystem.writeFile("dir/async.txt", content).join();
+        assertEquals("dir/async.txt", metadata.getPath());
+        assertEquals(19, metadata.getSize());
+        assertEquals("Hello, async World!", Files.readString(tempDir.resolve("dir/async.txt")));
+
+        ByteBuffer range = fileSystem.readFile("dir/async.txt", 7, 5).join();
+        assertEquals("async", StandardCharsets.UTF_8.decode(range).toString());
+
+        // Reading past the end returns only the bytes that exist
+        ByteBuffer tail = fileSystem.readFile("dir/async.txt", 13, 100).join();
+        assertEquals("World!", StandardCharsets.UTF_8.decode(tail).toString());
+    }
+
+    @Test
+    void readFile_ShouldFailFutureForMissingFile() {
+        CompletionException e = assertThrows(CompletionException.class, () -> fileSystem.readFile("missing.txt", 0, 10).join());
+        assertInstanceOf(PathNotFoundException.class, e.getCause());
+    }
+
+    @Test
+    void metadataOperations_ShouldRunOnExecutor() {
+        fileSystem.createDirectory("listed").join();
+        fileSystem.createFile("listed/a.txt").join();
+        fileSystem.createFile("listed/b.txt").join();
+
+        List<FileMetadata> contents = fileSystem.list("listed", null).join();
+        assertEquals(2, contents.size());
+
+        fileSystem.move("listed/a.txt", "listed/c.txt").join();
+        fileSystem.delete("listed/b.txt").join();
+        assertEquals(List.of("c.txt"), fileSystem.list("listed", null).join().stream()
+                .map(FileMetadata::getName)
+                .toList());
+    }
+
+    @Test
+    void writeFile_ThroughCache_ShouldInvalidateCachedMetadata() {
+        CachingFileSystem cache = new CachingFileSystem(localFileSystem, MetadataCacheConfig.builder()
+                .ttlMillis(60_000)
+                .build());
+        try (LocalAsyncFileSystem cached = new LocalAsyncFileSystem(cache, localFileSystem, Executors.newFixedThreadPool(2))) {
+            cached.writeFile("cached.txt", ByteBuffer.wrap("old".getBytes(StandardCharsets.UTF_8))).join();
+            assertEquals(3, cache.getMetadata("cached.txt").getSize());
+
+            FileMetadata metadata = cached.writeFile("cached.txt",
+                    ByteBuffer.wrap("newer content".getBytes(StandardCharsets.UTF_8))).join();
+
+            assertEquals(13, metadata.getSize());
+            assertEquals(13, cache.getMetadata("cached.txt").getSize());
+            assertEquals("newer", StandardCharsets.UTF_8.decode(cached.readFile("cached.txt", 0, 5).join()).toString());
+        }
+    }
+}
@@ -3,6 +3,8 @@ package net.sanyal.fshandler.local;
 import net.sanyal.fshandler.core.AbstractFileSystemTest;
 import net.sanyal.fshandler.core.FileSystem;
 import net.sanyal.fshandler.core.config.LocalFileSystemConfig;
+import net.sanyal.fshandler.core.io.Abortable;
+import net.sanyal.fshandler.core.model.FileListPage;
 import net.sanyal.fshandler.core.model.FileMetadata;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -11,8 +13,19 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 class LocalFileSystemTest extends AbstractFileSystemTest {
     private LocalFileSystem fileSystem;
@@ -62,6 +75,271 @@ class LocalFileSystemTest extends AbstractFileSystemTest {
         }
     }
 
+    @Test
+    void writeFile_Aborted_ShouldKeepPreviousContent() throws IOException {
+        try (OutputStream os = fileSystem.writeFile("kept.txt")) {
+            os.write("previous".getBytes(StandardCharsets.UTF_8));
+        }
+
+        OutputStream os = fileSystem.writeFile("kept.txt");
+        os.write("partial".getBytes(StandardCharsets.UTF_8));
+        assertInstanceOf(Abortable.class, os);
+        ((Abortable) os).abort();
+        os.close();
+
+        assertEquals("previous", Files.readString(tempDir.resolve("kept.txt")));
+        try (Stream<Path> staged = Files.list(tempDir.resolve(LocalFileSystem.STAGING_DIRECTORY_NAME))) {
+            assertEquals(0, staged.count());
+        }
+    }
+
+    @Test
+    void writeFile_InProgress_ShouldNotBeListed() throws IOException {
+        fileSystem.createFile("dir/existing.txt");
+
+        try (OutputStream os = fileSystem.writeFile("dir/uploading.txt")) {
+            os.write("partial".getBytes(StandardCharsets.UTF_8));
+            os.flush();
+
+            assertEquals(List.of("dir"), fileSystem.list("", null).stream().map(FileMetadata::getPath).toList());
+            assertEquals(List.of("dir", "dir/existing.txt"), fileSystem.listRecursive("", null).stream()
+                    .map(FileMetadata::getPath)
+                    .sorted()
+                    .toList());
+            try (Stream<FileMetadata> stream = fileSystem.listStream("", true, null)) {
+                assertEquals(2, stream.count());
+            }
+            assertEquals(2, fileSystem.listPage("", true, null, null, 10).getItems().size());
+        }
+
+        assertEquals("partial", Files.readString(tempDir.resolve("dir/uploading.txt")));
+        assertThrows(IllegalArgumentException.class, () -> fileSystem.getMetadata(LocalFileSystem.STAGING_DIRECTORY_NAME));
+    }
+
+    @Test
+    void writeFile_ShouldKeepPermissionsOfReplacedFile() throws IOException {
+        assumeTrue(tempDir.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        try (OutputStream os = fileSystem.writeFile("script.sh")) {
+            os.write("old".getBytes(StandardCharsets.UTF_8));
+        }
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rwxr-x---");
+        Files.setPosixFilePermissions(tempDir.resolve("script.sh"), permissions);
+
+        try (OutputStream os = fileSystem.writeFile("script.sh")) {
+            os.write("new".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertEquals("new", Files.readString(tempDir.resolve("script.sh")));
+        assertEquals(permissions, Files.getPosixFilePermissions(tempDir.resolve("script.sh")));
+    }
+
+    @Test
+    void constructor_ShouldDeleteUploadsLeftByPreviousProcess() throws IOException {
+        Path stale = tempDir.resolve(LocalFileSystem.STAGING_DIRECTORY_NAME).resolve("0123abcd.part");
+        Files.writeString(stale, "unfinished");
+
+        setupFileSystem();
+
+        assertFalse(Files.exists(stale));
+    }
+
+    @Test
+    void getLocalPath_ShouldResolveOnlyExistingRegularFiles() {
+        fileSystem.createFile("local.txt");
+        fileSystem.createDirectory("localDir");
+
+        assertEquals(tempDir.resolve("local.txt"), fileSystem.getLocalPath("local.txt").orElseThrow());
+        assertTrue(fileSystem.getLocalPath("localDir").isEmpty());
+        assertTrue(fileSystem.getLocalPath("missing.txt").isEmpty());
+    }
+
+    @Test
+    void listRecursive_ShouldBuildSameMetadataAsGetMetadata() throws IOException {
+        fileSystem.createDirectory("tree/nested");
+        try (OutputStream os = fileSystem.writeFile("tree/nested/data.bin")) {
+            os.write(new byte[42]);
+        }
+        fileSystem.createFile("tree/empty.txt");
+
+        java.util.List<FileMetadata> walked = fileSystem.listRecursive("tree", null);
+        assertEquals(3, walked.size());
+        for (FileMetadata metadata : walked) {
+            assertEquals(fileSystem.getMetadata(metadata.getPath()), metadata);
+        }
+        assertEquals(java.util.List.of("tree/nested", "tree/nested/data.bin"),
+            walked.stream().map(FileMetadata::getPath).filter(p -> p.startsWith("tree/nested")).toList());
+
+        try (java.util.stream.Stream<FileMetadata> streamed = fileSystem.listStream("tree", true, null)) {
+            assertEquals(new java.util.HashSet<>(walked), streamed.collect(java.util.stream.Collectors.toSet()));
+        }
+    }
+
+    @Test
+    void listRecursive_Parallel_ShouldMatchSequentialWalk() {
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 5; j++) {
+                fileSystem.createFile("wide/dir-" + i + "/sub-" + j + "/file.txt");
+                fileSystem.createFile("wide/dir-" + i + "/sub-" + j + "/file.java");
+            }
+        }
+        LocalFileSystemConfig config = LocalFileSystemConfig.builder()
+                .basePath(tempDir.toString())
+                .maxConnections(10)
+                .timeoutMillis(5000)
+                .listParallelism(4)
+                .build();
+        try (LocalFileSystem parallel = new LocalFileSystem(config)) {
+            java.util.List<FileMetadata> sequential = fileSystem.listRecursive("wide", null);
+            java.util.List<FileMetadata> walked = parallel.listRecursive("wide", null);
+            assertEquals(80, walked.size());
+            assertEquals(new java.util.HashSet<>(sequential), new java.util.HashSet<>(walked));
+
+            // Deterministic order is a name-sorted pre-order: every directory precedes its subtree
+            java.util.List<String> paths = walked.stream().map(FileMetadata::getPath).toList();
+            assertEquals(paths, parallel.listRecursive("wide", null).stream().map(FileMetadata::getPath).toList());
+            assertEquals("wide/dir-0", paths.get(0));
+            assertEquals("wide/dir-0/sub-0", paths.get(1));
+            assertEquals("wide/dir-0/sub-0/file.java", paths.get(2));
+            assertEquals("wide/dir-0/sub-0/file.txt", paths.get(3));
+
+            java.util.List<FileMetadata> txtFiles = parallel.listRecursive("wide", m -> m.getName().endsWith(".txt"));
+            assertEquals(25, txtFiles.size());
+        }
+    }
+
+    @Test
+    void listPage_ShouldPageThroughTreeInPreOrder() {
+        for (int i = 0; i < 7; i++) {
+            fileSystem.createFile("paged/dir-" + i + "/a.txt");
+            fileSystem.createFile("paged/dir-" + i + "/b.log");
+            fileSystem.createFile("paged/file-" + i + ".txt");
+        }
+        Predicate<FileMetadata> txtFiles = metadata -> metadata.getName().endsWith(".txt");
+        for (Predicate<FileMetadata> filter : Arrays.asList(null, txtFiles)) {
+            List<String> expected = fileSystem.listRecursive("paged", filter).stream()
+                    .map(FileMetadata::getPath)
+                    // Pre-order compares segment by segment, as if '/' sorted before every other character
+                    .sorted(Comparator.comparing(path -> path.replace('/', '\u0000')))
+                    .toList();
+
+            List<String> paged = new ArrayList<>();
+            String cursor = null;
+            do {
+                FileListPage page = fileSystem.listPage("paged", true, filter, cursor, 3);
+                assertTrue(page.getItems().size() <= 3);
+                page.getItems().forEach(metadata -> paged.add(metadata.getPath()));
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+
+            assertEquals(expected, paged);
+        }
+    }
+
+    @Test
+    void parallelTreeWalker_Deterministic_ShouldReturnNameSortedPreOrder() throws IOException {
+        // Uneven depths, and names where a file sorts between directories, so order is not a side effect of shape
+        for (String file : List.of("b/z.txt", "b/a/deep/er/leaf.txt", "b/m.txt", "a.txt", "c/1/2/3.txt", "b-sibling.txt", "c/0.txt")) {
+            fileSystem.createFile("ordered/" + file);
+        }
+        fileSystem.createDirectory("ordered/b/empty");
+        Path root = tempDir.resolve("ordered");
+        ForkJoinPool pool = new ForkJoinPool(8);
+        try {
+            ParallelTreeWalker walker = new ParallelTreeWalker(pool, (path, attrs) -> FileMetadata.builder()
+                    .path(tempDir.relativize(path).toString())
+                    .name(path.getFileName().toString())
+                    .isDirectory(attrs.isDirectory())
+                    .build(), path -> true, true);
+
+            List<String> expected = List.of(
+                    "ordered/a.txt",
+                    "ordered/b",
+                    "ordered/b/a",
+                    "ordered/b/a/deep",
+                    "ordered/b/a/deep/er",
+                    "ordered/b/a/deep/er/leaf.txt",
+                    "ordered/b/empty",
+                    "ordered/b/m.txt",
+                    "ordered/b/z.txt",
+                    "ordered/b-sibling.txt",
+                    "ordered/c",
+                    "ordered/c/0.txt",
+                    "ordered/c/1",
+                    "ordered/c/1/2",
+                    "ordered/c/1/2/3.txt");
+            for (int run = 0; run < 20; run++) {
+                assertEquals(expected, walker.walk(root, null).stream().map(FileMetadata::getPath).toList());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void list_Cached_ShouldReflectChanges() throws Exception {
+        fileSystem.createFile("cached/a.txt");
+        LocalFileSystemConfig config = LocalFileSystemConfig.builder()
+                .basePath(tempDir.toString())
+                .maxConnections(10)
+                .timeoutMillis(5000)
+                .listCacheMaxDirectories(2)
+                .build();
+        try (LocalFileSystem cached = new LocalFileSystem(config)) {
+            assertEquals(1, cached.list("cached", null).size());
+
+            // Changes made through the file system are visible right away
+            cached.createFile("cached/b.txt");
+            try (OutputStream out = cached.writeFile("cached/a.txt")) {
+                out.write("hello".getBytes(StandardCharsets.UTF_8));
+            }
+            java.util.List<FileMetadata> entries = cached.list("cached", null);
+            assertEquals(2, entries.size());
+            assertEquals(5, entries.stream().filter(m -> m.getName().equals("a.txt")).findFirst().orElseThrow().getSize());
+            cached.delete("cached/b.txt");
+            assertEquals(1, cached.list("cached", null).size());
+
+            // Changes made behind its back arrive through the watch service
+            Files.createFile(tempDir.resolve("cached/c.txt"));
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (cached.list("cached", null).size() != 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(2, cached.list("cached", null).size());
+
+            // Only the most recently listed directories stay watched
+            cached.createDirectory("one");
+            cached.createDirectory("two");
+            cached.list("one", null);
+            cached.list("two", null);
+            assertEquals(2, cached.getDirectoryCacheSize());
+        }
+    }
+
+    @Test
+    void delete_Parallel_ShouldRemoveWholeTree() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 5; j++) {
+                fileSystem.createFile("tree/dir-" + i + "/sub-" + j + "/file.txt");
+            }
+        }
+        fileSystem.createDirectory("tree/empty");
+        Files.createSymbolicLink(tempDir.resolve("tree/link"), tempDir.resolve("outside"));
+        fileSystem.createFile("outside/kept.txt");
+        LocalFileSystemConfig config = LocalFileSystemConfig.builder()
+                .basePath(tempDir.toString())
+                .maxConnections(10)
+                .timeoutMillis(5000)
+                .deleteParallelism(4)
+                .build();
+        try (LocalFileSystem parallel = new LocalFileSystem(config)) {
+            parallel.delete("tree");
+        }
+
+        assertFalse(Files.exists(tempDir.resolve("tree"), java.nio.file.LinkOption.NOFOLLOW_LINKS));
+        // The link is removed without following it into the directory it points to
+        assertTrue(Files.exists(tempDir.resolve("outside/kept.txt")));
+    }
+
     @Test
     void rename_ShouldRenameFile() {
         String originalPath = "original.txt";
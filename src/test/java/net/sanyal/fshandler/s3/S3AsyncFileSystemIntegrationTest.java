@@ -0,0 +1,158 @@
+package net.sanyal.fshandler.s3;
+
+import net.sanyal.fshandler.core.PartialDeleteException;
+import net.sanyal.fshandler.core.config.S3FileSystemConfig;
+import net.sanyal.fshandler.core.model.FileMetadata;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.localstack.LocalStackContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.paginators.ListObjectsV2Publisher;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@Testcontainers
+class S3AsyncFileSystemIntegrationTest {
+    private static final String BUCKET_NAME = "async-test-bucket";
+    private static final DockerImageName LOCALSTACK_IMAGE = DockerImageName.parse("localstack/localstack:latest");
+
+    @Container
+    private static final LocalStackContainer localstack = new LocalStackContainer(LOCALSTACK_IMAGE)
+            .withServices(LocalStackContainer.Service.S3);
+
+    private S3FileSystem syncFileSystem;
+    private S3AsyncFileSystem fileSystem;
+
+    @BeforeEach
+    void setUp() {
+        S3FileSystemConfig config = S3FileSystemConfig.builder()
+            .bucketName(BUCKET_NAME)
+            .region(localstack.getRegion())
+            .accessKey(localstack.getAccessKey())
+            .secretKey(localstack.getSecretKey())
+            .maxConnections(10)
+            .timeoutMillis(5000)
+            .build();
+        System.setProperty("aws.endpoint-url", localstack.getEndpointOverride(LocalStackContainer.Service.S3).toString());
+        // The sync backend creates the bucket and cleans up between tests
+        syncFileSystem = new S3FileSystem(config);
+        for (FileMetadata file : syncFileSystem.listRecursive("", null)) {
+            syncFileSystem.delete(file.isDirectory() ? file.getPath() + "/" : file.getPath());
+        }
+        fileSystem = new S3AsyncFileSystem(config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.clearProperty("aws.endpoint-url");
+        fileSystem.close();
+        syncFileSystem.close();
+    }
+
+    @Test
+    void writeAndReadFile_ShouldRoundTripRanges() {
+        ByteBuffer content = ByteBuffer.wrap("Hello, async World!".getBytes(StandardCharsets.UTF_8));
+
+        FileMetadata metadata = fileSystem.writeFile("dir/async.txt", content).join();
+        assertEquals("dir/async.txt", metadata.getPath());
+        assertEquals(19, metadata.getSize());
+
+        ByteBuffer range = fileSystem.readFile("dir/async.txt", 7, 5).join();
+        assertEquals("async", StandardCharsets.UTF_8.decode(range).toString());
+    }
+
+    @Test
+    void getMetadata_ShouldFailFutureForMissingObject() {
+        assertThrows(CompletionException.class, () -> fileSystem.getMetadata("missing.txt").join());
+    }
+
+    @Test
+    void list_ShouldReturnFilesAndSubdirectories() {
+        fileSystem.createDirectory("listed").join();
+        fileSystem.createFile("listed/a.txt").join();
+        fileSystem.createFile("listed/nested/b.txt").join();
+        fileSystem.createDirectory("listed/empty").join();
+
+        List<FileMetadata> contents = fileSystem.list("listed", null).join();
+
+        assertEquals(List.of("a.txt", "empty", "nested"), contents.stream().map(FileMetadata::getName).toList());
+        assertFalse(contents.get(0).isDirectory());
+        assertTrue(contents.get(1).isDirectory());
+        assertTrue(contents.get(2).isDirectory());
+        assertEquals(List.of("a.txt"), fileSystem.list("listed", m -> !m.isDirectory()).join().stream()
+            .map(FileMetadata::getName)
+            .toList());
+    }
+
+    @Test
+    void moveAndDelete_ShouldUpdateBucket() {
+        fileSystem.createFile("moved/a.txt").join();
+
+        FileMetadata moved = fileSystem.move("moved/a.txt", "moved/b.txt").join();
+        assertEquals("moved/b.txt", moved.getPath());
+        assertThrows(CompletionException.class, () -> fileSystem.getMetadata("moved/a.txt").join());
+
+        fileSystem.delete("moved/b.txt").join();
+        assertTrue(fileSystem.list("moved", null).join().isEmpty());
+    }
+
+    @Test
+    void delete_ShouldRemoveEveryPageBelowPrefix() {
+        // More keys than a single listing page or DeleteObjects request holds
+        for (int i = 0; i < 1005; i++) {
+            syncFileSystem.createFile("bulk/shard-" + (i % 5) + "/file-" + i + ".txt");
+        }
+        fileSystem.createFile("bulk-sibling.txt").join();
+
+        fileSystem.delete("bulk/").join();
+
+        assertTrue(syncFileSystem.listRecursive("bulk", null).isEmpty());
+        assertEquals("bulk-sibling.txt", fileSystem.getMetadata("bulk-sibling.txt").join().getPath());
+    }
+
+    @Test
+    void delete_ShouldFailWithKeysS3RefusedToDelete() {
+        // LocalStack does not enforce policies that would make it refuse a key, so the client is stubbed
+        S3AsyncClient client = mock(S3AsyncClient.class);
+        when(client.listObjectsV2Paginator(any(ListObjectsV2Request.class)))
+            .thenAnswer(invocation -> new ListObjectsV2Publisher(client, invocation.getArgument(0)));
+        when(client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(CompletableFuture.completedFuture(
+            ListObjectsV2Response.builder()
+                .contents(S3Object.builder().key("locked/a.txt").build(),
+                    S3Object.builder().key("locked/b.txt").build(),
+                    S3Object.builder().key("locked/c.txt").build())
+                .isTruncated(false)
+                .build()));
+        when(client.deleteObjects(any(DeleteObjectsRequest.class))).thenReturn(CompletableFuture.completedFuture(
+            DeleteObjectsResponse.builder()
+                .errors(S3Error.builder().key("locked/b.txt").code("AccessDenied").message("Access Denied").build())
+                .build()));
+        S3AsyncFileSystem stubbed = new S3AsyncFileSystem(client, BUCKET_NAME);
+
+        CompletionException e = assertThrows(CompletionException.class, () -> stubbed.delete("locked/").join());
+
+        PartialDeleteException partial = assertInstanceOf(PartialDeleteException.class, e.getCause());
+        assertEquals(2, partial.getDeletedCount());
+        assertEquals(Map.of("locked/b.txt", "AccessDenied: Access Denied"), partial.getFailures());
+    }
+}
@@ -10,7 +10,17 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import org.testcontainers.utility.DockerImageName;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -37,15 +47,19 @@ class S3FileSystemIntegrationTest extends AbstractFileSystemTest {
             .secretKey(localstack.getSecretKey())
             .maxConnections(10)
             .timeoutMillis(5000)
+            .partSizeBytes(S3FileSystemConfig.MIN_PART_SIZE_BYTES)
+            .maxInFlightParts(2)
+            .readPartSizeBytes(1024 * 1024)
+            .readParallelism(3)
             .build();
 
         System.setProperty("aws.endpoint-url", localstack.getEndpointOverride(LocalStackContainer.Service.S3).toString());
         fileSystem = new S3FileSystem(config);
         
-        // Clean up any existing files
-        List<FileMetadata> existingFiles = fileSystem.list("", null);
+        // Clean up any existing files; listings now surface subdirectories, so leftovers of other tests matter
+        List<FileMetadata> existingFiles = fileSystem.listRecursive("", null);
         for (FileMetadata file : existingFiles) {
-            fileSystem.delete(file.getPath());
+            fileSystem.delete(file.isDirectory() ? file.getPath() + "/" : file.getPath());
         }
     }
 
@@ -59,10 +73,10 @@ class S3FileSystemIntegrationTest extends AbstractFileSystemTest {
         System.clearProperty("aws.endpoint-url");
         if (fileSystem != null) {
             // Clean up any remaining files
-            List<FileMetadata> existingFiles = fileSystem.list("", null);
+            List<FileMetadata> existingFiles = fileSystem.listRecursive("", null);
             for (FileMetadata file : existingFiles) {
                 try {
-                    fileSystem.delete(file.getPath());
+                    fileSystem.delete(file.isDirectory() ? file.getPath() + "/" : file.getPath());
                 } catch (Exception e) {
                     // Ignore cleanup errors
                 }
@@ -104,4 +118,111 @@ class S3FileSystemIntegrationTest extends AbstractFileSystemTest {
         assertTrue(files.stream().anyMatch(f -> f.getPath().equals(testFile)),
             "File should be created in the correct bucket");
     }
+
+    @Test
+    void writeFile_ShouldUploadLargeObjectInParts() throws IOException {
+        String testFile = "large.bin";
+        byte[] content = new byte[S3FileSystemConfig.MIN_PART_SIZE_BYTES * 2 + 1234];
+        new Random(42).nextBytes(content);
+
+        try (OutputStream os = fileSystem.writeFile(testFile)) {
+            // Write in uneven chunks so parts are assembled across write calls
+            for (int offset = 0; offset < content.length; offset += 100_000) {
+                os.write(content, offset, Math.min(100_000, content.length - offset));
+            }
+        }
+
+        assertEquals(content.length, fileSystem.getMetadata(testFile).getSize());
+        try (InputStream is = fileSystem.readFile(testFile)) {
+            assertArrayEquals(content, is.readAllBytes());
+        }
+    }
+
+    @Test
+    void readFile_ShouldReassemblePrefetchedRangesInOrder() throws IOException {
+        String testFile = "prefetch.bin";
+        byte[] content = new byte[5 * 1024 * 1024 + 17];
+        new Random(7).nextBytes(content);
+        try (OutputStream os = fileSystem.writeFile(testFile)) {
+            os.write(content);
+        }
+
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        try (InputStream is = fileSystem.readFile(testFile)) {
+            // Mix single-byte and bulk reads across part boundaries
+            read.write(is.read());
+            byte[] chunk = new byte[300_001];
+            int n;
+            while ((n = is.read(chunk)) > 0) {
+                read.write(chunk, 0, n);
+            }
+        }
+        assertArrayEquals(content, read.toByteArray());
+    }
+
+    @Test
+    void listRecursive_ShouldMergeAllPrefixShards() {
+        Set<String> expected = new HashSet<>();
+        expected.add(fileSystem.createFile("sharded/top.txt").getPath());
+        for (int shard = 0; shard < 25; shard++) {
+            for (int i = 0; i < 4; i++) {
+                expected.add(fileSystem.createFile("sharded/shard-" + shard + "/nested-" + (i % 2) + "/file-" + i + ".txt").getPath());
+            }
+        }
+
+        Set<String> listed = fileSystem.listRecursive("sharded", null).stream()
+            .map(FileMetadata::getPath)
+            .collect(Collectors.toSet());
+        assertEquals(expected, listed);
+
+        try (Stream<FileMetadata> stream = fileSystem.listStream("sharded", true, m -> m.getName().equals("file-0.txt"))) {
+            assertEquals(25, stream.count());
+        }
+    }
+
+    @Test
+    void delete_ShouldRemovePrefixInBatches() {
+        // More keys than a single DeleteObjects request takes
+        for (int i = 0; i < 1005; i++) {
+            fileSystem.createFile("bulk/shard-" + (i % 5) + "/file-" + i + ".txt");
+        }
+        fileSystem.createFile("bulk-sibling.txt");
+
+        fileSystem.delete("bulk/");
+
+        assertTrue(fileSystem.listRecursive("bulk", null).isEmpty());
+        assertEquals("bulk-sibling.txt", fileSystem.getMetadata("bulk-sibling.txt").getPath());
+    }
+
+    @Test
+    void delete_ShouldFinishWithMoreShardsThanConnections() {
+        // Twice as many shards as maxConnections, so listing workers alone could occupy every transfer thread
+        for (int i = 0; i < 1100; i++) {
+            fileSystem.createFile("wide/shard-" + (i % 20) + "/file-" + i + ".txt");
+        }
+
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> fileSystem.delete("wide/"));
+
+        assertTrue(fileSystem.listRecursive("wide", null).isEmpty());
+    }
+
+    @Test
+    void rename_ShouldMoveWholePrefix() {
+        fileSystem.createDirectory("reports");
+        for (int i = 0; i < 30; i++) {
+            fileSystem.createFile("reports/month-" + (i % 3) + "/report-" + i + ".csv");
+        }
+        fileSystem.createFile("reports-sibling.txt");
+
+        FileMetadata renamed = fileSystem.rename("reports", "archived-reports");
+
+        assertTrue(renamed.isDirectory());
+        assertEquals("archived-reports", renamed.getPath());
+        assertTrue(fileSystem.listRecursive("reports", null).isEmpty());
+        assertEquals(30, fileSystem.listRecursive("archived-reports", null).size());
+        // The directory marker moves along with the objects below it
+        assertTrue(fileSystem.getMetadata("archived-reports/").isDirectory());
+        assertEquals("report-7.csv", fileSystem.getMetadata("archived-reports/month-1/report-7.csv").getName());
+        assertEquals("reports-sibling.txt", fileSystem.getMetadata("reports-sibling.txt").getPath());
+    }
 }